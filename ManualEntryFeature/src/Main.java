@@ -1,9 +1,54 @@
+import controller.AppConfig;
+import controller.UserRegistry;
+import service.LedgerServer;
 import view.LoginFrame;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
 public class Main {
     public static void main(String[] args) {
+        List<String> options = Arrays.asList(args);
+        if (options.contains("--headless")) {
+            runHeadless(options);
+            return;
+        }
         javax.swing.SwingUtilities.invokeLater(() -> {
             new LoginFrame(); // ✅ Show login/register first
         });
     }
+
+    /**
+     * Serve all ledgers over the local HTTP API instead of opening the window.
+     * Usage: --headless [--port N]; the port defaults to server.port in the config.
+     */
+    private static void runHeadless(List<String> options) {
+        int port = AppConfig.getServerPort();
+        int portIndex = options.indexOf("--port");
+        if (portIndex >= 0 && portIndex + 1 < options.size()) {
+            String value = options.get(portIndex + 1);
+            try {
+                port = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                port = -1;
+            }
+            if (port < 0 || port > 65535) {
+                System.err.println("Invalid port: " + value + " (expected 0-65535)");
+                System.exit(1);
+            }
+        }
+        try {
+            UserRegistry registry = new UserRegistry(new File("PersonalFinanceTracker/users.json"));
+            registry.load();
+            LedgerServer server = new LedgerServer(port, registry);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "ledger-server-shutdown"));
+            System.out.println("Serving ledgers on http://127.0.0.1:" + server.getPort() + "/api/");
+        } catch (IOException e) {
+            System.err.println("Could not start server: " + e.getMessage());
+            System.exit(1);
+        }
+    }
 }
@@ -17,9 +17,33 @@ public class AppConfig {
     public static final String API_URL_KEY = "transaction.api.url";
     public static final String API_KEY_KEY = "transaction.api.key";
     public static final String USE_API_KEY = "transaction.use.api";
+    public static final String STORAGE_FORMAT_KEY = "transaction.storage.format";
+    public static final String API_BATCH_SIZE_KEY = "transaction.api.batch.size";
+    public static final String API_PARALLELISM_KEY = "transaction.api.parallelism";
+    public static final String API_CONNECT_TIMEOUT_KEY = "transaction.api.connect.timeout.ms";
+    public static final String API_READ_TIMEOUT_KEY = "transaction.api.read.timeout.ms";
+    public static final String API_MAX_RETRIES_KEY = "transaction.api.max.retries";
+    public static final String API_CACHE_MAX_ENTRIES_KEY = "transaction.api.cache.max.entries";
+    public static final String API_CACHE_TTL_DAYS_KEY = "transaction.api.cache.ttl.days";
+    public static final String API_CACHE_AMOUNT_BUCKETS_KEY = "transaction.api.cache.amount.buckets";
+    public static final String CSV_PARSER_KEY = "csv.import.parser";
+    public static final String CSV_DUPLICATES_KEY = "csv.import.duplicates";
+    public static final String SERVER_PORT_KEY = "server.port";
+    public static final String SERVER_CACHE_MAX_LEDGERS_KEY = "server.cache.max.ledgers";
+    public static final String SERVER_CACHE_MAX_MB_KEY = "server.cache.max.mb";
 
     // 默认值
     private static final String DEFAULT_API_URL = "https://api.deepseek.com/v1/chat/completions";
+    private static final int DEFAULT_API_BATCH_SIZE = 50;
+    private static final int DEFAULT_API_PARALLELISM = 4;
+    private static final int DEFAULT_API_CONNECT_TIMEOUT_MS = 10000;
+    private static final int DEFAULT_API_READ_TIMEOUT_MS = 60000;
+    private static final int DEFAULT_API_MAX_RETRIES = 3;
+    private static final int DEFAULT_API_CACHE_MAX_ENTRIES = 10000;
+    private static final int DEFAULT_API_CACHE_TTL_DAYS = 30;
+    private static final int DEFAULT_SERVER_PORT = 8080;
+    private static final int DEFAULT_SERVER_CACHE_MAX_LEDGERS = 1000;
+    private static final int DEFAULT_SERVER_CACHE_MAX_MB = 256;
 
     static {
         loadConfig();
@@ -89,6 +113,26 @@ public class AppConfig {
         saveConfig();
     }
 
+    /**
+     * 获取整数配置值
+     * @param key 配置键
+     * @param defaultValue 默认值
+     * @return 配置值，如果不存在或不是正整数则返回默认值
+     */
+    public static int getIntConfig(String key, int defaultValue) {
+        String value = getConfig(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed >= 0 ? parsed : defaultValue;
+        } catch (NumberFormatException e) {
+            System.err.println("配置项 " + key + " 不是有效整数: " + value);
+            return defaultValue;
+        }
+    }
+
     /**
      * 获取是否使用API
      * @return 是否使用API
@@ -105,6 +149,22 @@ public class AppConfig {
         setConfig(USE_API_KEY, String.valueOf(use));
     }
 
+    /**
+     * 是否使用二进制账本格式存储交易（默认使用JSON）
+     * @return 是否使用二进制格式
+     */
+    public static boolean isBinaryStorage() {
+        return "binary".equalsIgnoreCase(getConfig(STORAGE_FORMAT_KEY, "json"));
+    }
+
+    /**
+     * 设置交易存储格式
+     * @param binary true为二进制账本格式，false为JSON
+     */
+    public static void setBinaryStorage(boolean binary) {
+        setConfig(STORAGE_FORMAT_KEY, binary ? "binary" : "json");
+    }
+
     /**
      * 获取API URL
      * @return API URL
@@ -136,4 +196,114 @@ public class AppConfig {
     public static void setApiKey(String key) {
         setConfig(API_KEY_KEY, key);
     }
+
+    /**
+     * 获取批量分类时每个API请求包含的交易数
+     * @return 批大小
+     */
+    public static int getApiBatchSize() {
+        return Math.max(1, getIntConfig(API_BATCH_SIZE_KEY, DEFAULT_API_BATCH_SIZE));
+    }
+
+    /**
+     * 获取同时进行的API请求数
+     * @return 并发数
+     */
+    public static int getApiParallelism() {
+        return Math.max(1, getIntConfig(API_PARALLELISM_KEY, DEFAULT_API_PARALLELISM));
+    }
+
+    /**
+     * 获取API连接超时（毫秒）
+     * @return 连接超时
+     */
+    public static int getApiConnectTimeoutMillis() {
+        return getIntConfig(API_CONNECT_TIMEOUT_KEY, DEFAULT_API_CONNECT_TIMEOUT_MS);
+    }
+
+    /**
+     * 获取API读取超时（毫秒）
+     * @return 读取超时
+     */
+    public static int getApiReadTimeoutMillis() {
+        return getIntConfig(API_READ_TIMEOUT_KEY, DEFAULT_API_READ_TIMEOUT_MS);
+    }
+
+    /**
+     * 获取API请求失败后的最大重试次数
+     * @return 最大重试次数
+     */
+    public static int getApiMaxRetries() {
+        return getIntConfig(API_MAX_RETRIES_KEY, DEFAULT_API_MAX_RETRIES);
+    }
+
+    /**
+     * 获取API分类结果缓存的最大条目数
+     * @return 最大条目数
+     */
+    public static int getApiCacheMaxEntries() {
+        return getIntConfig(API_CACHE_MAX_ENTRIES_KEY, DEFAULT_API_CACHE_MAX_ENTRIES);
+    }
+
+    /**
+     * 获取API分类结果缓存的有效期（天），0表示永不过期
+     * @return 有效天数
+     */
+    public static int getApiCacheTtlDays() {
+        return getIntConfig(API_CACHE_TTL_DAYS_KEY, DEFAULT_API_CACHE_TTL_DAYS);
+    }
+
+    /**
+     * 缓存键是否包含金额区间（默认不包含）
+     * @return 是否按金额区间区分缓存
+     */
+    public static boolean isApiCacheAmountBuckets() {
+        return Boolean.parseBoolean(getConfig(API_CACHE_AMOUNT_BUCKETS_KEY, "false"));
+    }
+
+    /**
+     * CSV导入是否使用内存映射的并行解析器（默认使用，设为sequential则逐行读取）
+     * @return 是否并行解析
+     */
+    public static boolean isParallelCsvParser() {
+        return !"sequential".equalsIgnoreCase(getConfig(CSV_PARSER_KEY, "parallel"));
+    }
+
+    /**
+     * CSV导入时如何处理账本中已有的记录：keep、skip、flag或merge（默认skip）
+     * @return 重复记录处理策略
+     */
+    public static DuplicateIndex.Policy getDuplicatePolicy() {
+        String value = getConfig(CSV_DUPLICATES_KEY, "skip");
+        try {
+            return DuplicateIndex.Policy.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("配置项 " + CSV_DUPLICATES_KEY + " 不是有效策略: " + value);
+            return DuplicateIndex.Policy.SKIP;
+        }
+    }
+
+    /**
+     * 无界面服务模式监听的本机端口（默认8080）
+     * @return 端口号
+     */
+    public static int getServerPort() {
+        return getIntConfig(SERVER_PORT_KEY, DEFAULT_SERVER_PORT);
+    }
+
+    /**
+     * 服务模式下同时驻留内存的用户账本数上限（默认1000）
+     * @return 账本数上限
+     */
+    public static int getServerCacheMaxLedgers() {
+        return Math.max(1, getIntConfig(SERVER_CACHE_MAX_LEDGERS_KEY, DEFAULT_SERVER_CACHE_MAX_LEDGERS));
+    }
+
+    /**
+     * 服务模式下驻留账本的估算堆内存上限，单位MB（默认256）
+     * @return 内存上限（MB）
+     */
+    public static int getServerCacheMaxMb() {
+        return Math.max(1, getIntConfig(SERVER_CACHE_MAX_MB_KEY, DEFAULT_SERVER_CACHE_MAX_MB));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package controller;
+
+import model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Categorizes a list of transactions in parallel.
+ * The list is split into row ranges that run on a shared fork-join pool; results
+ * are written back by index, so the output keeps the input order. Progress is
+ * reported after each chunk and a run can be cancelled from any thread.
+ */
+public class BulkCategorizer {
+
+    // Rows categorized by one task before it reports progress
+    private static final int CHUNK_SIZE = 2048;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("bulk-categorizer-" + t.getPoolIndex());
+                return t;
+            },
+            null, false);
+
+    /**
+     * Receives progress updates; called from worker threads
+     */
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    private volatile boolean cancelled;
+
+    /**
+     * Ask a running or future categorizeAll call to stop as soon as possible
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Categorize every transaction, keeping the input order.
+     * When classification goes through the remote API, rows are sent in batches
+     * by MLTransactionCategorizer instead of one request per row.
+     * @param progress optional progress listener, may be null
+     * @throws CancellationException if cancel() was called before the run finished
+     */
+    public List<Transaction> categorizeAll(List<Transaction> transactions, ProgressListener progress) {
+        int total = transactions.size();
+        Transaction[] result = new Transaction[total];
+        AtomicInteger done = new AtomicInteger();
+
+        if (TransactionCategorizer.usesRemoteClassifier()) {
+            categorizeRemotely(transactions, result, done, progress);
+        } else {
+            POOL.invoke(new ChunkTask(transactions, result, 0, total, done, progress));
+        }
+
+        if (cancelled) {
+            throw new CancellationException("Categorization cancelled after " + done.get() + " of " + total);
+        }
+        return Arrays.asList(result);
+    }
+
+    private void categorizeRemotely(List<Transaction> transactions, Transaction[] result,
+                                    AtomicInteger done, ProgressListener progress) {
+        List<Transaction> pending = new ArrayList<>();
+        List<Integer> pendingRows = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction t = transactions.get(i);
+            String preset = TransactionCategorizer.presetCategory(t);
+            if (preset != null) {
+                result[i] = withCategory(t, preset);
+                done.incrementAndGet();
+            } else {
+                pending.add(t);
+                pendingRows.add(i);
+            }
+        }
+
+        int resolved = done.get();
+        List<String> categories = MLTransactionCategorizer.predictCategories(pending,
+                (rowsDone, total) -> {
+                    done.set(resolved + rowsDone);
+                    if (progress != null) {
+                        progress.onProgress(resolved + rowsDone, result.length);
+                    }
+                },
+                this::isCancelled);
+        for (int i = 0; i < categories.size(); i++) {
+            int row = pendingRows.get(i);
+            result[row] = withCategory(transactions.get(row), categories.get(i));
+        }
+    }
+
+    private static Transaction withCategory(Transaction t, String category) {
+        return new Transaction(t.getType(), category, t.getAmount(), t.getDate(), t.getNote(), t.getSource());
+    }
+
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Transaction> input;
+        private final Transaction[] output;
+        private final int from;
+        private final int to;
+        private final AtomicInteger done;
+        private final ProgressListener progress;
+
+        ChunkTask(List<Transaction> input, Transaction[] output, int from, int to,
+                  AtomicInteger done, ProgressListener progress) {
+            this.input = input;
+            this.output = output;
+            this.from = from;
+            this.to = to;
+            this.done = done;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+            if (to - from > CHUNK_SIZE && getPool() != null) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(input, output, from, mid, done, progress),
+                        new ChunkTask(input, output, mid, to, done, progress));
+                return;
+            }
+
+            for (int start = from; start < to && !cancelled; start += CHUNK_SIZE) {
+                int end = Math.min(to, start + CHUNK_SIZE);
+                for (int i = start; i < end && !cancelled; i++) {
+                    output[i] = TransactionCategorizer.categorize(input.get(i));
+                }
+                int completed = done.addAndGet(end - start);
+                if (progress != null) {
+                    progress.onProgress(completed, output.length);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package controller;
+
+import model.Transaction;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes transactions to a CSV file straight from the columns of a TransactionStore,
+ * without building Transaction objects or holding rows in memory. Fields follow
+ * RFC 4180: fields containing commas, quotes or line breaks are quoted, quotes are
+ * doubled and lines end in CRLF. The importers read a quoted note's line breaks
+ * back as part of the note. The file is UTF-8,
+ * gzip-compressed when its name ends in .gz, and only replaces an existing file
+ * once it is complete.
+ *
+ * Rows can be limited to a date range, a type and a category. The output has the
+ * same columns as CSVImporter reads, so an export can be imported again.
+ */
+public class CSVExporter {
+
+    private static final String[] HEADER = {"Type", "Category", "Amount", "Date", "Note", "Source"};
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    // Rows between progress reports and cancellation checks
+    private static final int REPORT_INTERVAL = 8192;
+
+    /**
+     * Receives progress from the exporting thread
+     */
+    public interface ProgressListener {
+        void onProgress(int rowsScanned, int totalRows, long rowsWritten);
+    }
+
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private Transaction.Type type;
+    private String category;
+    private volatile boolean cancelled;
+
+    /**
+     * Only export rows dated within [from, to]; either bound may be null
+     */
+    public void setDateRange(LocalDate from, LocalDate to) {
+        this.fromDate = from;
+        this.toDate = to;
+    }
+
+    /**
+     * Only export rows of one type, or all types if null
+     */
+    public void setType(Transaction.Type type) {
+        this.type = type;
+    }
+
+    /**
+     * Only export rows of one category, or all categories if null
+     */
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    /**
+     * Stop a running export; the target file is left as it was
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Export the matching rows of a store. The store must not change during the
+     * export: pass the live store on its owning thread, or a copy from any thread.
+     * @param progress optional progress listener, may be null
+     * @return number of rows written
+     * @throws CancellationException if cancel() was called
+     */
+    public long export(TransactionStore store, File file, ProgressListener progress) throws IOException {
+        File partial = new File(file.getPath() + ".part");
+        long written = 0;
+        boolean complete = false;
+        try {
+            try (Writer out = open(partial, file.getName().toLowerCase().endsWith(".gz"))) {
+                for (int i = 0; i < HEADER.length; i++) {
+                    if (i > 0) out.write(',');
+                    out.write(HEADER[i]);
+                }
+                out.write("\r\n");
+
+                int size = store.size();
+                int fromDay = fromDate == null ? Integer.MIN_VALUE : (int) fromDate.toEpochDay();
+                int toDay = toDate == null ? Integer.MAX_VALUE : (int) toDate.toEpochDay();
+                boolean dateFilter = fromDate != null || toDate != null;
+                int categoryId = category == null ? -1 : categoryId(store, category);
+                int cachedDay = TransactionStore.NO_DATE;
+                String cachedDate = "";
+
+                for (int row = 0; row < size; row++) {
+                    if (row % REPORT_INTERVAL == 0) {
+                        if (cancelled) {
+                            throw new CancellationException("Export cancelled after " + written + " rows");
+                        }
+                        if (progress != null) {
+                            progress.onProgress(row, size, written);
+                        }
+                    }
+                    int day = store.getEpochDay(row);
+                    if (dateFilter && (day == TransactionStore.NO_DATE || day < fromDay || day > toDay)) continue;
+                    Transaction.Type rowType = store.getType(row);
+                    if (type != null && rowType != type) continue;
+                    if (category != null && store.getCategoryId(row) != categoryId) continue;
+
+                    if (rowType != null) out.write(rowType.name());
+                    out.write(',');
+                    writeField(out, store.getCategory(row));
+                    out.write(',');
+                    out.write(Double.toString(store.getAmount(row)));
+                    out.write(',');
+                    if (day != TransactionStore.NO_DATE) {
+                        // Ledgers are sorted by date, so consecutive rows mostly share one
+                        if (day != cachedDay) {
+                            cachedDate = LocalDate.ofEpochDay(day).toString();
+                            cachedDay = day;
+                        }
+                        out.write(cachedDate);
+                    }
+                    out.write(',');
+                    writeField(out, store.getNote(row));
+                    out.write(',');
+                    writeField(out, store.getSource(row));
+                    out.write("\r\n");
+                    written++;
+                }
+            }
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            complete = true;
+            if (progress != null) {
+                progress.onProgress(store.size(), store.size(), written);
+            }
+            return written;
+        } finally {
+            if (!complete) {
+                partial.delete();
+            }
+        }
+    }
+
+    private static Writer open(File file, boolean gzip) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out = gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : new BufferedOutputStream(out, BUFFER_BYTES);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_BYTES);
+    }
+
+    /**
+     * Write a field on one line, quoting it if it contains a comma or quote
+     */
+    static void writeField(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                out.write(value, start, i + 1 - start);
+                out.write('"');
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+
+    // Dictionary id of a category in the store, or -2 if no row uses it
+    private static int categoryId(TransactionStore store, String category) {
+        for (int row = 0; row < store.size(); row++) {
+            if (category.equals(store.getCategory(row))) {
+                return store.getCategoryId(row);
+            }
+        }
+        return -2;
+    }
+}
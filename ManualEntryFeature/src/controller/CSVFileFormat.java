@@ -0,0 +1,211 @@
+package controller;
+
+import model.Transaction.Type;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Field formats of one CSV file, detected from a sample of its first rows.
+ * Once the date layout is known, every date is read by a fixed-position digit
+ * parser instead of trying up to seven formatters per row, each failure of which
+ * throws. Rows that do not fit the detected layout still go through the original
+ * probing in CSVImporter.parseDate. Type column values are few, so their parsed
+ * form is cached. Instances are safe to share between parser threads.
+ */
+public class CSVFileFormat {
+
+    static final int SAMPLE_ROWS = 200;
+
+    /**
+     * Date layouts in the order CSVImporter.parseDate tries them
+     */
+    enum DateLayout {
+        YEAR_MONTH_DAY_DASH(0, 5, 8, '-'),   // yyyy-MM-dd
+        YEAR_MONTH_DAY_SLASH(0, 5, 8, '/'),  // yyyy/MM/dd
+        DAY_MONTH_YEAR_DASH(6, 3, 0, '-'),   // dd-MM-yyyy
+        DAY_MONTH_YEAR_SLASH(6, 3, 0, '/'),  // dd/MM/yyyy
+        MONTH_DAY_YEAR_DASH(6, 0, 3, '-'),   // MM-dd-yyyy
+        MONTH_DAY_YEAR_SLASH(6, 0, 3, '/');  // MM/dd/yyyy
+
+        final int yearAt;
+        final int monthAt;
+        final int dayAt;
+        final char separator;
+
+        DateLayout(int yearAt, int monthAt, int dayAt, char separator) {
+            this.yearAt = yearAt;
+            this.monthAt = monthAt;
+            this.dayAt = dayAt;
+            this.separator = separator;
+        }
+
+        boolean isSeparator(int index) {
+            return yearAt == 0 ? index == 4 || index == 7 : index == 2 || index == 5;
+        }
+    }
+
+    /**
+     * No detected layout: every date is probed as before
+     */
+    public static final CSVFileFormat PROBING = new CSVFileFormat(null);
+
+    private final DateLayout dateLayout;
+    private final Map<String, Type> typeCache = new ConcurrentHashMap<>();
+
+    CSVFileFormat(DateLayout dateLayout) {
+        this.dateLayout = dateLayout;
+    }
+
+    /**
+     * Detect the format from the first data rows of a file (the header is skipped)
+     */
+    public static CSVFileFormat detect(String filePath) {
+        List<String> sample = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            CSVImporter.readRecord(br);
+            String line;
+            while (sample.size() < SAMPLE_ROWS && (line = CSVImporter.readRecord(br)) != null) {
+                sample.add(line);
+            }
+        } catch (IOException e) {
+            return PROBING;
+        }
+        return detect(sample);
+    }
+
+    /**
+     * Pick the date layout that reads the most sampled dates, the earliest on a tie
+     */
+    public static CSVFileFormat detect(List<String> sampleLines) {
+        DateLayout[] layouts = DateLayout.values();
+        int[] matches = new int[layouts.length];
+        for (String line : sampleLines) {
+            String[] parts = CSVImporter.splitLine(line);
+            if (parts.length < 4) continue;
+            String date = parts[3].trim();
+            for (int i = 0; i < layouts.length; i++) {
+                if (parse(layouts[i], date) != null) matches[i]++;
+            }
+        }
+        int best = -1;
+        for (int i = 0; i < layouts.length; i++) {
+            if (matches[i] > 0 && (best < 0 || matches[i] > matches[best])) best = i;
+        }
+        return best < 0 ? PROBING : new CSVFileFormat(layouts[best]);
+    }
+
+    /**
+     * The detected date layout, or null if dates are probed row by row
+     */
+    DateLayout getDateLayout() {
+        return dateLayout;
+    }
+
+    /**
+     * Parse a date, probing the known formats only if it does not fit the detected layout
+     */
+    public LocalDate parseDate(String value) {
+        if (dateLayout != null) {
+            LocalDate date = parse(dateLayout, value.trim());
+            if (date != null) {
+                return date;
+            }
+        }
+        return CSVImporter.parseDate(value);
+    }
+
+    /**
+     * Parse a trimmed date from UTF-8 bytes
+     * @return the date, or null if it does not fit the detected layout
+     */
+    LocalDate parseDate(byte[] bytes, int start, int end) {
+        DateLayout layout = dateLayout;
+        if (layout == null || end - start != 10) {
+            return null;
+        }
+        for (int i = 0; i < 10; i++) {
+            byte b = bytes[start + i];
+            if (layout.isSeparator(i) ? b != layout.separator : b < '0' || b > '9') {
+                return null;
+            }
+        }
+        return resolve(layout,
+                number(bytes, start + layout.yearAt, 4),
+                number(bytes, start + layout.monthAt, 2),
+                number(bytes, start + layout.dayAt, 2));
+    }
+
+    public Type parseType(String value) {
+        Type type = typeCache.get(value);
+        if (type == null) {
+            type = CSVImporter.parseType(value);
+            if (typeCache.size() < 1024) {
+                typeCache.put(value, type);
+            }
+        }
+        return type;
+    }
+
+    private static LocalDate parse(DateLayout layout, String value) {
+        if (value.length() != 10) {
+            return null;
+        }
+        for (int i = 0; i < 10; i++) {
+            char c = value.charAt(i);
+            if (layout.isSeparator(i) ? c != layout.separator : c < '0' || c > '9') {
+                return null;
+            }
+        }
+        return resolve(layout,
+                number(value, layout.yearAt, 4),
+                number(value, layout.monthAt, 2),
+                number(value, layout.dayAt, 2));
+    }
+
+    /**
+     * Same result as the formatters: month 1-12 and day 1-31 are required, and a day
+     * past the end of the month is moved back to its last day (ResolverStyle.SMART).
+     * Year 0 only exists for the ISO layout, which LocalDate.parse reads first.
+     */
+    private static LocalDate resolve(DateLayout layout, int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        if (year == 0 && layout != DateLayout.YEAR_MONTH_DAY_DASH) {
+            return null;
+        }
+        int length = Month.of(month).length(Year.isLeap(year));
+        if (day > length) {
+            // LocalDate.parse rejects it, then the yyyy-MM-dd formatter clamps it, except in year 0
+            return year == 0 ? null : LocalDate.of(year, month, length);
+        }
+        return LocalDate.of(year, month, day);
+    }
+
+    private static int number(String value, int from, int digits) {
+        int n = 0;
+        for (int i = from; i < from + digits; i++) {
+            n = n * 10 + (value.charAt(i) - '0');
+        }
+        return n;
+    }
+
+    private static int number(byte[] bytes, int from, int digits) {
+        int n = 0;
+        for (int i = from; i < from + digits; i++) {
+            n = n * 10 + (bytes[i] - '0');
+        }
+        return n;
+    }
+}
@@ -0,0 +1,249 @@
+package controller;
+
+import model.Transaction;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streaming CSV import: read and parse, categorize, then hand batches to a sink.
+ * Each stage runs on its own thread and passes fixed-size batches through bounded
+ * queues, so a slow stage holds back the ones before it and memory use does not
+ * depend on the size of the file. The sink receives batches in file order as soon
+ * as they are categorized.
+ */
+public class CSVImportPipeline {
+
+    // Rows per batch, and batches buffered between two stages
+    private static final int BATCH_SIZE = 2048;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final long POLL_MILLIS = 100;
+
+    // Marks the end of the stream in a queue
+    private static final Batch END = new Batch(Collections.emptyList(), 0);
+
+    /**
+     * Receives categorized batches in file order, on the thread that called run()
+     */
+    public interface BatchSink {
+        void accept(List<Transaction> batch) throws Exception;
+    }
+
+    /**
+     * Receives progress after each batch reaches the sink
+     */
+    public interface ProgressListener {
+        void onProgress(long bytesRead, long totalBytes, long rowsImported);
+    }
+
+    private static class Batch {
+        final List<Transaction> rows;
+        final long bytesRead;
+
+        Batch(List<Transaction> rows, long bytesRead) {
+            this.rows = rows;
+            this.bytesRead = bytesRead;
+        }
+    }
+
+    private final File file;
+    private final BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<Batch> categorized = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile BulkCategorizer currentCategorizer;
+    private volatile boolean cancelled;
+
+    public CSVImportPipeline(String filePath) {
+        this.file = new File(filePath);
+    }
+
+    /**
+     * Stop the import; batches already handed to the sink stay imported
+     */
+    public void cancel() {
+        cancelled = true;
+        BulkCategorizer categorizer = currentCategorizer;
+        if (categorizer != null) {
+            categorizer.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Import the file, blocking until every row has reached the sink.
+     * @param progress optional progress listener, may be null
+     * @return number of rows handed to the sink
+     * @throws IOException if the file cannot be read, or the sink fails
+     * @throws CancellationException if cancel() was called
+     */
+    public long run(BatchSink sink, ProgressListener progress) throws IOException {
+        long totalBytes = file.length();
+        Thread reader = new Thread(this::readAndParse, "csv-import-reader");
+        Thread categorizer = new Thread(this::categorize, "csv-import-categorizer");
+        reader.setDaemon(true);
+        categorizer.setDaemon(true);
+        reader.start();
+        categorizer.start();
+
+        long rows = 0;
+        try {
+            while (!cancelled) {
+                Batch batch = categorized.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == null) continue;
+                if (batch == END) break;
+                sink.accept(batch.rows);
+                rows += batch.rows.size();
+                if (progress != null) {
+                    progress.onProgress(batch.bytesRead, totalBytes, rows);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } catch (Exception e) {
+            cancel();
+            throw new IOException("Import stopped: " + e.getMessage(), e);
+        } finally {
+            if (cancelled) {
+                // Let blocked stages see the flag and exit
+                parsed.clear();
+                categorized.clear();
+            }
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error != null) {
+            throw new IOException("Import failed: " + error.getMessage(), error);
+        }
+        if (cancelled) {
+            throw new CancellationException("Import cancelled after " + rows + " rows");
+        }
+        return rows;
+    }
+
+    private void readAndParse() {
+        try {
+            if (AppConfig.isParallelCsvParser()) {
+                parseInParallel();
+            } else {
+                readLines();
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+        offer(parsed, END);
+    }
+
+    /**
+     * Memory-mapped chunks parsed on several threads, re-cut into batches
+     */
+    private void parseInParallel() throws IOException {
+        new ParallelCSVParser().parse(file.getPath(), (rows, endOffset) -> {
+            for (int from = 0; from < rows.size() && !cancelled; from += BATCH_SIZE) {
+                List<Transaction> batch = new ArrayList<>(rows.subList(from, Math.min(rows.size(), from + BATCH_SIZE)));
+                if (!offer(parsed, new Batch(batch, endOffset))) return false;
+            }
+            return !cancelled;
+        });
+    }
+
+    /**
+     * One record at a time through CSVImporter.parseLine
+     */
+    private void readLines() throws IOException {
+        CSVFileFormat format = CSVFileFormat.detect(file.getPath());
+        try (CountingInputStream counter = new CountingInputStream(new FileInputStream(file));
+             BufferedReader br = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8))) {
+            CSVImporter.readRecord(br); // header
+            List<Transaction> rows = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while (!cancelled && (line = CSVImporter.readRecord(br)) != null) {
+                Transaction transaction = CSVImporter.parseLine(line, format);
+                if (transaction != null) {
+                    rows.add(transaction);
+                }
+                if (rows.size() == BATCH_SIZE) {
+                    if (!offer(parsed, new Batch(rows, counter.count))) return;
+                    rows = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!rows.isEmpty()) {
+                offer(parsed, new Batch(rows, counter.count));
+            }
+        }
+    }
+
+    private void categorize() {
+        try {
+            while (!cancelled) {
+                Batch batch = parsed.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == null) continue;
+                if (batch == END) break;
+                BulkCategorizer categorizer = new BulkCategorizer();
+                currentCategorizer = categorizer;
+                if (cancelled) return;
+                List<Transaction> rows = new ArrayList<>(categorizer.categorizeAll(batch.rows, null));
+                if (!offer(categorized, new Batch(rows, batch.bytesRead))) return;
+            }
+        } catch (CancellationException e) {
+            return;
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+        offer(categorized, END);
+    }
+
+    /**
+     * Blocking put that gives up once the import is cancelled
+     */
+    private boolean offer(BlockingQueue<Batch> queue, Batch batch) {
+        try {
+            while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (cancelled) return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Counts bytes taken from the file, for progress reporting
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
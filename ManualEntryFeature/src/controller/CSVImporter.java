@@ -27,64 +27,80 @@ public class CSVImporter {
 
     public static List<Transaction> importFromCSV(String filePath) {
         List<Transaction> transactions = new ArrayList<>();
+        // 先根据前几行确定日期格式，之后每行按该格式解析
+        CSVFileFormat format = CSVFileFormat.detect(filePath);
 
         try (BufferedReader br = new BufferedReader(new FileReader(filePath, StandardCharsets.UTF_8))) {
             String line;
             boolean isFirstLine = true;
 
-            // 读取CSV文件
-            while ((line = br.readLine()) != null) {
+            // 读取CSV文件（带引号的字段可以跨行）
+            while ((line = readRecord(br)) != null) {
                 // 跳过表头
                 if (isFirstLine) {
                     isFirstLine = false;
                     continue;
                 }
 
-                try {
-                    // 首先尝试使用简单的逗号分隔
-                    String[] parts = line.split(",");
+                Transaction transaction = parseLine(line, format);
+                if (transaction != null) {
+                    transactions.add(transaction);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("导入CSV失败: " + e.getMessage());
+        }
 
-                    // 如果分割结果不够，尝试使用更复杂的CSV解析
-                    if (parts.length < 4) {
-                        parts = parseCSVLine(line);
-                    }
+        return transactions;
+    }
 
-                    if (parts.length < 4) {
-                        System.err.println("跳过无效行: " + line);
-                        continue;
-                    }
+    /**
+     * 解析一行CSV数据（不含表头），逐行尝试各种日期格式
+     * @return 交易记录，无效行返回null
+     */
+    public static Transaction parseLine(String line) {
+        return parseLine(line, CSVFileFormat.PROBING);
+    }
 
-                    // 解析类型
-                    Type type = parseType(parts[0]);
+    /**
+     * 按文件检测到的格式解析一行CSV数据（不含表头）
+     * @param format CSVFileFormat.detect得到的文件格式
+     * @return 交易记录，无效行返回null
+     */
+    public static Transaction parseLine(String line, CSVFileFormat format) {
+        try {
+            String[] parts = splitLine(line);
 
-                    // 解析金额 (先保留原始分类，后面会由AI重新分类)
-                    String category = parts.length > 1 ? parts[1].trim() : "Pending";
+            if (parts.length < 4) {
+                System.err.println("跳过无效行: " + line);
+                return null;
+            }
 
-                    // 解析金额
-                    double amount = parseAmount(parts[2]);
+            // 解析类型
+            Type type = format.parseType(parts[0]);
 
-                    // 解析日期
-                    LocalDate date = parseDate(parts[3]);
+            // 解析金额 (先保留原始分类，后面会由AI重新分类)
+            String category = parts.length > 1 ? parts[1].trim() : "Pending";
 
-                    // 解析备注和来源
-                    String note = parts.length > 4 ? parts[4].trim() : "";
-                    String source = parts.length > 5 ? parts[5].trim() : "CSV导入";
+            // 解析金额
+            double amount = parseAmount(parts[2]);
 
-                    // 创建交易记录 - 注意这里不直接分类，保留原始分类或使用"Pending"
-                    // 后续会在MainFrame中使用TransactionCategorizer进行分类
-                    // 不对交易进行立即分类，让控制器处理分类
-                    Transaction transaction = new Transaction(type, "待分类", amount, date, note, source);
-                    transactions.add(transaction);
+            // 解析日期
+            LocalDate date = format.parseDate(parts[3]);
 
-                } catch (Exception e) {
-                    System.err.println("解析行时出错: " + line + ", 错误: " + e.getMessage());
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("导入CSV失败: " + e.getMessage());
-        }
+            // 解析备注和来源
+            String note = parts.length > 4 ? parts[4].trim() : "";
+            String source = parts.length > 5 ? parts[5].trim() : "CSV导入";
 
-        return transactions;
+            // 创建交易记录 - 注意这里不直接分类，保留原始分类或使用"Pending"
+            // 后续会在MainFrame中使用TransactionCategorizer进行分类
+            // 不对交易进行立即分类，让控制器处理分类
+            return new Transaction(type, "待分类", amount, date, note, source);
+
+        } catch (Exception e) {
+            System.err.println("解析行时出错: " + line + ", 错误: " + e.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -99,7 +115,7 @@ public class CSVImporter {
             String line;
             boolean isFirstLine = true;
 
-            while ((line = br.readLine()) != null) {
+            while ((line = readRecord(br)) != null) {
                 // 跳过表头
                 if (isFirstLine) {
                     isFirstLine = false;
@@ -132,6 +148,72 @@ public class CSVImporter {
         return transactions;
     }
 
+    /**
+     * 读取一条CSV记录（RFC 4180）：引号内的换行属于字段内容，此时继续读下一行，
+     * 字段里的换行统一为LF。只有字段开头的引号才开始一个带引号字段，字段中间的
+     * 引号按普通字符处理，所以一个多余的引号不会吞掉后面的行。
+     * @return 不含行结束符的记录，文件结束时返回null
+     */
+    static String readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null || line.indexOf('"') < 0 || !endsInQuotes(line)) {
+            return line;
+        }
+        StringBuilder record = new StringBuilder(line);
+        String next;
+        while ((next = reader.readLine()) != null) {
+            record.append('\n').append(next);
+            if (!endsInQuotes(record)) {
+                break;
+            }
+        }
+        return record.toString();
+    }
+
+    /**
+     * 记录是否停在一个未闭合的带引号字段里
+     */
+    private static boolean endsInQuotes(CharSequence record) {
+        boolean fieldStart = true;
+        boolean quotedField = false;
+        boolean inQuotes = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (c == '"') {
+                if (fieldStart) quotedField = true;
+                if (quotedField) inQuotes = !inQuotes;
+                fieldStart = false;
+            } else if (!inQuotes) {
+                if (c == ',') {
+                    fieldStart = true;
+                    quotedField = false;
+                } else if (c != ' ' && c != '\t') {
+                    fieldStart = false;
+                }
+            }
+        }
+        return inQuotes;
+    }
+
+    /**
+     * 拆分CSV行：先用简单的逗号分隔，含引号或字段不足时再按引号规则解析
+     */
+    static String[] splitLine(String line) {
+        // 带引号的字段可能包含逗号，直接按引号规则解析
+        if (line.indexOf('"') >= 0) {
+            return parseCSVLine(line);
+        }
+
+        // 首先尝试使用简单的逗号分隔
+        String[] parts = line.split(",");
+
+        // 如果分割结果不够，尝试使用更复杂的CSV解析
+        if (parts.length < 4) {
+            parts = parseCSVLine(line);
+        }
+        return parts;
+    }
+
     /**
      * 解析CSV行（处理引号内的逗号）
      */
@@ -140,9 +222,16 @@ public class CSVImporter {
         boolean inQuotes = false;
         StringBuilder currentValue = new StringBuilder();
 
-        for (char c : line.toCharArray()) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
             if (c == '\"') {
-                inQuotes = !inQuotes;
+                // 引号内连续两个引号表示一个引号字符
+                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '\"') {
+                    currentValue.append(c);
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
             } else if (c == ',' && !inQuotes) {
                 values.add(currentValue.toString().trim());
                 currentValue = new StringBuilder();
@@ -158,7 +247,7 @@ public class CSVImporter {
     /**
      * 解析交易类型
      */
-    private static Type parseType(String value) {
+    static Type parseType(String value) {
         String normalized = value.trim().toUpperCase();
         if (normalized.contains("INCOME") ||
                 normalized.contains("收入") ||
@@ -173,16 +262,26 @@ public class CSVImporter {
     /**
      * 解析金额
      */
-    private static double parseAmount(String value) {
-        // 移除货币符号和逗号
-        String normalized = value.replaceAll("[¥$,]", "").trim();
-        return Double.parseDouble(normalized);
+    static double parseAmount(String value) {
+        // 移除货币符号和逗号（大多数金额不含这些字符，无需复制）
+        String normalized = value;
+        if (value.indexOf('¥') >= 0 || value.indexOf('$') >= 0 || value.indexOf(',') >= 0) {
+            StringBuilder sb = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c != '¥' && c != '$' && c != ',') {
+                    sb.append(c);
+                }
+            }
+            normalized = sb.toString();
+        }
+        return Double.parseDouble(normalized.trim());
     }
 
     /**
      * 尝试用不同格式解析日期
      */
-    private static LocalDate parseDate(String value) {
+    static LocalDate parseDate(String value) {
         String normalized = value.trim();
 
         // 首先尝试直接解析
@@ -0,0 +1,240 @@
+package controller;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * Binary format of the local categorization model.
+ * All strings (categories, descriptions, sources) are written once to a dictionary
+ * and referenced by index; counters and amounts are written as primitives. Loading
+ * is a single sequential read with no reflection, unlike the ObjectOutputStream
+ * format used by earlier versions, which is still recognized so old files migrate.
+ *
+ * Layout, big-endian:
+ * <pre>
+ * int magic, int version
+ * int stringCount, stringCount x (int byteLength, UTF-8 bytes)
+ * int n, n x (int category, int count)                                  category frequency
+ * int n, n x (int description, int m, m x (int category, int count))    description patterns
+ * int n, n x (int category, int m, m x (double amount, int count))      amount patterns
+ * int n, n x (int category, int m, m x (byte dayOfWeek, int count))     day of week patterns
+ * int n, n x (int category, int m, m x (int source, int count))         source patterns
+ * </pre>
+ */
+public class CategoryModelFile {
+
+    static final int FILE_MAGIC = 0x50464d4c; // "PFML"
+    static final int FILE_VERSION = 1;
+
+    // First bytes of a Java serialization stream
+    private static final int SERIALIZATION_MAGIC = 0xACED0005;
+
+    private static final DayOfWeek[] DAYS = DayOfWeek.values();
+
+    /**
+     * The five pattern maps of the model
+     */
+    public static class Model {
+        public Map<String, Map<String, Integer>> descriptionPatterns = new HashMap<>();
+        public Map<String, Map<Double, Integer>> amountPatterns = new HashMap<>();
+        public Map<String, Map<DayOfWeek, Integer>> dayOfWeekPatterns = new HashMap<>();
+        public Map<String, Map<String, Integer>> sourcePatterns = new HashMap<>();
+        public Map<String, Integer> categoryFrequency = new HashMap<>();
+    }
+
+    /**
+     * Whether the file was written by ObjectOutputStream and needs converting
+     */
+    public static boolean isLegacyFormat(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == SERIALIZATION_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Read a model in either the current or the legacy serialized format
+     */
+    @SuppressWarnings("unchecked")
+    public static Model read(File file) throws IOException {
+        if (isLegacyFormat(file)) {
+            try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                Model model = new Model();
+                model.descriptionPatterns = (Map<String, Map<String, Integer>>) ois.readObject();
+                model.amountPatterns = (Map<String, Map<Double, Integer>>) ois.readObject();
+                model.dayOfWeekPatterns = (Map<String, Map<DayOfWeek, Integer>>) ois.readObject();
+                model.sourcePatterns = (Map<String, Map<String, Integer>>) ois.readObject();
+                model.categoryFrequency = (Map<String, Integer>) ois.readObject();
+                return model;
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unreadable legacy model file", e);
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a model file: " + file);
+            }
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported model file version " + version);
+            }
+
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            Model model = new Model();
+            int n = in.readInt();
+            model.categoryFrequency = new HashMap<>(capacity(n));
+            for (int i = 0; i < n; i++) {
+                model.categoryFrequency.put(strings[in.readInt()], in.readInt());
+            }
+
+            n = in.readInt();
+            model.descriptionPatterns = new HashMap<>(capacity(n));
+            for (int i = 0; i < n; i++) {
+                String description = strings[in.readInt()];
+                int m = in.readInt();
+                Map<String, Integer> counts = new HashMap<>(capacity(m));
+                for (int j = 0; j < m; j++) {
+                    counts.put(strings[in.readInt()], in.readInt());
+                }
+                model.descriptionPatterns.put(description, counts);
+            }
+
+            n = in.readInt();
+            model.amountPatterns = new HashMap<>(capacity(n));
+            for (int i = 0; i < n; i++) {
+                String category = strings[in.readInt()];
+                int m = in.readInt();
+                Map<Double, Integer> counts = new HashMap<>(capacity(m));
+                for (int j = 0; j < m; j++) {
+                    counts.put(in.readDouble(), in.readInt());
+                }
+                model.amountPatterns.put(category, counts);
+            }
+
+            n = in.readInt();
+            model.dayOfWeekPatterns = new HashMap<>(capacity(n));
+            for (int i = 0; i < n; i++) {
+                String category = strings[in.readInt()];
+                int m = in.readInt();
+                Map<DayOfWeek, Integer> counts = new EnumMap<>(DayOfWeek.class);
+                for (int j = 0; j < m; j++) {
+                    counts.put(DAYS[in.readByte()], in.readInt());
+                }
+                model.dayOfWeekPatterns.put(category, counts);
+            }
+
+            n = in.readInt();
+            model.sourcePatterns = new HashMap<>(capacity(n));
+            for (int i = 0; i < n; i++) {
+                String category = strings[in.readInt()];
+                int m = in.readInt();
+                Map<String, Integer> counts = new HashMap<>(capacity(m));
+                for (int j = 0; j < m; j++) {
+                    counts.put(strings[in.readInt()], in.readInt());
+                }
+                model.sourcePatterns.put(category, counts);
+            }
+            return model;
+        }
+    }
+
+    /**
+     * Encode a model into the current format.
+     * The caller must keep the maps from changing while this runs.
+     */
+    public static byte[] encode(Model model) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (String category : model.categoryFrequency.keySet()) intern(ids, category);
+        for (Map.Entry<String, Map<String, Integer>> e : model.descriptionPatterns.entrySet()) {
+            intern(ids, e.getKey());
+            for (String category : e.getValue().keySet()) intern(ids, category);
+        }
+        for (String category : model.amountPatterns.keySet()) intern(ids, category);
+        for (String category : model.dayOfWeekPatterns.keySet()) intern(ids, category);
+        for (Map.Entry<String, Map<String, Integer>> e : model.sourcePatterns.entrySet()) {
+            intern(ids, e.getKey());
+            for (String source : e.getValue().keySet()) intern(ids, source);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+
+            out.writeInt(ids.size());
+            for (String value : ids.keySet()) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+
+            out.writeInt(model.categoryFrequency.size());
+            for (Map.Entry<String, Integer> e : model.categoryFrequency.entrySet()) {
+                out.writeInt(ids.get(e.getKey()));
+                out.writeInt(e.getValue());
+            }
+
+            out.writeInt(model.descriptionPatterns.size());
+            for (Map.Entry<String, Map<String, Integer>> e : model.descriptionPatterns.entrySet()) {
+                out.writeInt(ids.get(e.getKey()));
+                writeStringCounts(out, ids, e.getValue());
+            }
+
+            out.writeInt(model.amountPatterns.size());
+            for (Map.Entry<String, Map<Double, Integer>> e : model.amountPatterns.entrySet()) {
+                out.writeInt(ids.get(e.getKey()));
+                out.writeInt(e.getValue().size());
+                for (Map.Entry<Double, Integer> count : e.getValue().entrySet()) {
+                    out.writeDouble(count.getKey());
+                    out.writeInt(count.getValue());
+                }
+            }
+
+            out.writeInt(model.dayOfWeekPatterns.size());
+            for (Map.Entry<String, Map<DayOfWeek, Integer>> e : model.dayOfWeekPatterns.entrySet()) {
+                out.writeInt(ids.get(e.getKey()));
+                out.writeInt(e.getValue().size());
+                for (Map.Entry<DayOfWeek, Integer> count : e.getValue().entrySet()) {
+                    out.writeByte(count.getKey().ordinal());
+                    out.writeInt(count.getValue());
+                }
+            }
+
+            out.writeInt(model.sourcePatterns.size());
+            for (Map.Entry<String, Map<String, Integer>> e : model.sourcePatterns.entrySet()) {
+                out.writeInt(ids.get(e.getKey()));
+                writeStringCounts(out, ids, e.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream does not throw
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeStringCounts(DataOutputStream out, Map<String, Integer> ids,
+                                          Map<String, Integer> counts) throws IOException {
+        out.writeInt(counts.size());
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            out.writeInt(ids.get(count.getKey()));
+            out.writeInt(count.getValue());
+        }
+    }
+
+    private static void intern(Map<String, Integer> ids, String value) {
+        ids.putIfAbsent(value, ids.size());
+    }
+
+    private static int capacity(int entries) {
+        return (int) (entries / 0.75f) + 1;
+    }
+}
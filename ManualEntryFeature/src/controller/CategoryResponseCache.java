@@ -0,0 +1,296 @@
+package controller;
+
+import model.Transaction;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of categories answered by the classification API.
+ * Keys are the normalized (type, note, source) of a transaction, optionally with
+ * a coarse amount bucket, so repeated entries such as the daily coffee or metro
+ * ride are only sent to the API once. Entries expire after a TTL, and the cache
+ * is written to disk shortly after it changes so it survives restarts.
+ */
+public class CategoryResponseCache {
+
+    private static final int FILE_MAGIC = 0x50464343; // "PFCC"
+    // Version 2 length-prefixes the note and source in keys
+    private static final int FILE_VERSION = 2;
+    private static final long SAVE_DELAY_MILLIS = 2000;
+
+    private static final ScheduledExecutorService SAVER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "category-cache-saver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static class Entry {
+        final String category;
+        final long createdAt;
+
+        Entry(String category, long createdAt) {
+            this.category = category;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final File file;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final boolean bucketAmounts;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    // The delayed save and the shutdown hook share one temp file
+    private final Object saveLock = new Object();
+
+    /**
+     * @param file where the cache is persisted, or null to keep it in memory only
+     * @param maxEntries least recently used entries beyond this are evicted
+     * @param ttlMillis entries older than this are ignored and dropped
+     * @param bucketAmounts whether the amount's order of magnitude is part of the key
+     */
+    public CategoryResponseCache(File file, int maxEntries, long ttlMillis, boolean bucketAmounts) {
+        this.file = file;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.bucketAmounts = bucketAmounts;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CategoryResponseCache.this.maxEntries;
+            }
+        };
+        load();
+    }
+
+    /**
+     * A cache configured from AppConfig and persisted to api_category_cache.dat
+     */
+    public static CategoryResponseCache fromConfig() {
+        CategoryResponseCache cache = new CategoryResponseCache(
+                new File("api_category_cache.dat"),
+                AppConfig.getApiCacheMaxEntries(),
+                TimeUnit.DAYS.toMillis(AppConfig.getApiCacheTtlDays()),
+                AppConfig.isApiCacheAmountBuckets());
+        Runtime.getRuntime().addShutdownHook(new Thread(cache::save, "category-cache-flush"));
+        return cache;
+    }
+
+    /**
+     * The cached category for a transaction, or null on a miss
+     */
+    public synchronized String get(Transaction transaction) {
+        String key = keyOf(transaction);
+        Entry entry = entries.get(key);
+        if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.category;
+    }
+
+    /**
+     * Remember the API's answer for a transaction
+     */
+    public void put(Transaction transaction, String category) {
+        if (category == null) {
+            return;
+        }
+        synchronized (this) {
+            entries.put(keyOf(transaction), new Entry(category, System.currentTimeMillis()));
+        }
+        scheduleSave();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Fraction of lookups answered from the cache, 0 if there were none
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        scheduleSave();
+    }
+
+    /**
+     * Key of a transaction: type, normalized note and source, and the amount bucket if enabled.
+     * Note and source are length-prefixed, so a '|' inside a note cannot make two
+     * different note/source pairs share a key.
+     */
+    String keyOf(Transaction transaction) {
+        String note = normalize(transaction.getNote());
+        String source = normalize(transaction.getSource());
+        StringBuilder key = new StringBuilder();
+        key.append(transaction.getType()).append('|')
+                .append(note.length()).append(':').append(note).append('|')
+                .append(source.length()).append(':').append(source);
+        if (bucketAmounts) {
+            key.append('|').append(amountBucket(transaction.getAmount()));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Lower-case, Unicode-compatible form with runs of whitespace collapsed
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder out = new StringBuilder(folded.length());
+        boolean space = false;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = out.length() > 0;
+            } else {
+                if (space) {
+                    out.append(' ');
+                    space = false;
+                }
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Half-decade buckets: 1-3, 3-10, 10-31, 31-100, ...
+     */
+    static int amountBucket(double amount) {
+        double magnitude = Math.abs(amount);
+        if (magnitude < 1) {
+            return 0;
+        }
+        return 1 + (int) Math.floor(Math.log10(magnitude) * 2);
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return ttlMillis > 0 && now - entry.createdAt > ttlMillis;
+    }
+
+    private void scheduleSave() {
+        if (file != null && saveScheduled.compareAndSet(false, true)) {
+            SAVER.schedule(() -> {
+                saveScheduled.set(false);
+                save();
+            }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write the unexpired entries to disk, least recently used first
+     */
+    public void save() {
+        if (file == null) {
+            return;
+        }
+        // Copy inside the save lock too, so a newer copy is never overwritten by an older one
+        synchronized (saveLock) {
+            List<Map.Entry<String, Entry>> snapshot;
+            synchronized (this) {
+                snapshot = new ArrayList<>(entries.entrySet());
+            }
+            writeFile(snapshot);
+        }
+    }
+
+    private void writeFile(List<Map.Entry<String, Entry>> snapshot) {
+        long now = System.currentTimeMillis();
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                int live = 0;
+                for (Map.Entry<String, Entry> e : snapshot) {
+                    if (!isExpired(e.getValue(), now)) live++;
+                }
+                out.writeInt(live);
+                for (Map.Entry<String, Entry> e : snapshot) {
+                    if (isExpired(e.getValue(), now)) continue;
+                    writeString(out, e.getKey());
+                    writeString(out, e.getValue().category);
+                    out.writeLong(e.getValue().createdAt);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to save API category cache: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                System.err.println("Ignoring API category cache with unknown format: " + file);
+                return;
+            }
+            int count = in.readInt();
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    String key = readString(in);
+                    Entry entry = new Entry(readString(in), in.readLong());
+                    if (!isExpired(entry, now)) {
+                        entries.put(key, entry);
+                    }
+                }
+            }
+            System.out.println("Loaded " + entries.size() + " cached API categories.");
+        } catch (IOException e) {
+            System.err.println("Failed to load API category cache: " + e.getMessage());
+        }
+    }
+
+    // writeUTF is limited to 64KB, and notes are user text
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,352 @@
+package controller;
+
+import java.util.*;
+
+/**
+ * Compiled form of the local model's description and amount statistics.
+ * Produces the same base, description and amount scores as the original
+ * predictCategory loops, but without walking the whole model per prediction:
+ * <ul>
+ *   <li>the category frequency total is cached,</li>
+ *   <li>known descriptions are indexed by character bigram, so descriptions that
+ *       contain the query are found from one posting list, and descriptions the
+ *       query contains are found by looking up its substrings,</li>
+ *   <li>amounts are kept per category as sorted histograms with prefix and suffix
+ *       sums, so the similarity sum is evaluated with binary searches.</li>
+ * </ul>
+ * It reads the live model maps and is kept current through onLearn.
+ */
+public class CategoryScoreIndex {
+
+    private final Map<String, Map<String, Integer>> descriptionPatterns;
+    private final Map<String, Map<Double, Integer>> amountPatterns;
+    private final Map<String, Integer> categoryFrequency;
+
+    private long totalFrequency;
+
+    // Known descriptions by id, and posting lists of description ids per bigram (or single char)
+    private final Map<String, Integer> descriptionIds = new HashMap<>();
+    private final List<String> descriptions = new ArrayList<>();
+    private final Map<Integer, IntList> postings = new HashMap<>();
+    private final TreeMap<Integer, Integer> descriptionLengths = new TreeMap<>();
+
+    // Per-category sum of all description counts; an empty query matches every description
+    private final Map<String, Integer> allDescriptionCounts = new HashMap<>();
+
+    private final Map<String, AmountHistogram> amountHistograms = new HashMap<>();
+    private final Set<String> staleAmountCategories = new HashSet<>();
+
+    public CategoryScoreIndex(Map<String, Map<String, Integer>> descriptionPatterns,
+                              Map<String, Map<Double, Integer>> amountPatterns,
+                              Map<String, Integer> categoryFrequency) {
+        this.descriptionPatterns = descriptionPatterns;
+        this.amountPatterns = amountPatterns;
+        this.categoryFrequency = categoryFrequency;
+
+        for (int frequency : categoryFrequency.values()) {
+            totalFrequency += frequency;
+        }
+        for (Map.Entry<String, Map<String, Integer>> entry : descriptionPatterns.entrySet()) {
+            indexDescription(entry.getKey());
+            for (Map.Entry<String, Integer> count : entry.getValue().entrySet()) {
+                allDescriptionCounts.merge(count.getKey(), count.getValue(), Integer::sum);
+            }
+        }
+        staleAmountCategories.addAll(amountPatterns.keySet());
+    }
+
+    /**
+     * Record that the model learned one more transaction; call after the maps are updated
+     */
+    public synchronized void onLearn(String category, String description, double amount) {
+        totalFrequency++;
+        if (!descriptionIds.containsKey(description)) {
+            indexDescription(description);
+        }
+        allDescriptionCounts.merge(category, 1, Integer::sum);
+        staleAmountCategories.add(category);
+    }
+
+    /**
+     * Base, description and amount scores for a lower-cased description and an amount
+     */
+    public synchronized Map<String, Double> score(String description, double amount) {
+        Map<String, Double> scores = new HashMap<>();
+
+        // The base score is the proportion of the category among all transactions
+        for (Map.Entry<String, Integer> entry : categoryFrequency.entrySet()) {
+            scores.put(entry.getKey(), (double) entry.getValue() / totalFrequency);
+        }
+
+        Map<String, Integer> exact = descriptionPatterns.get(description);
+        if (exact != null) {
+            // Describing an exact match is a strong signal
+            for (Map.Entry<String, Integer> entry : exact.entrySet()) {
+                scores.merge(entry.getKey(), entry.getValue() * 3.0, Double::sum);
+            }
+        } else if (description.isEmpty()) {
+            // Every known description contains the empty string
+            for (Map.Entry<String, Integer> entry : allDescriptionCounts.entrySet()) {
+                scores.merge(entry.getKey(), entry.getValue() * 0.5, Double::sum);
+            }
+        } else {
+            // A partial match is given to a lower score
+            for (int id : partialMatches(description)) {
+                for (Map.Entry<String, Integer> entry : descriptionPatterns.get(descriptions.get(id)).entrySet()) {
+                    scores.merge(entry.getKey(), entry.getValue() * 0.5, Double::sum);
+                }
+            }
+        }
+
+        refreshAmountHistograms();
+        for (Map.Entry<String, AmountHistogram> entry : amountHistograms.entrySet()) {
+            scores.merge(entry.getKey(), entry.getValue().similaritySum(amount) * 0.5, Double::sum);
+        }
+        return scores;
+    }
+
+    /**
+     * Ids of known descriptions that contain the query or are contained in it, excluding the query itself
+     */
+    private Set<Integer> partialMatches(String query) {
+        Set<Integer> matches = new LinkedHashSet<>();
+
+        // Known descriptions containing the query: scan the shortest posting list of its bigrams
+        IntList candidates = null;
+        if (query.length() == 1) {
+            candidates = postings.get(gramKey(query.charAt(0), '\uFFFF'));
+        } else {
+            for (int i = 0; i + 1 < query.length(); i++) {
+                IntList list = postings.get(gramKey(query.charAt(i), query.charAt(i + 1)));
+                if (list == null) {
+                    candidates = null;
+                    break;
+                }
+                if (candidates == null || list.size < candidates.size) {
+                    candidates = list;
+                }
+            }
+        }
+        if (candidates != null) {
+            for (int i = 0; i < candidates.size; i++) {
+                int id = candidates.values[i];
+                if (descriptions.get(id).contains(query)) {
+                    matches.add(id);
+                }
+            }
+        }
+
+        // Known descriptions contained in the query: look up its substrings of every known length
+        for (int length : descriptionLengths.headMap(query.length()).keySet()) {
+            if (length == 0) {
+                matches.add(descriptionIds.get(""));
+                continue;
+            }
+            for (int start = 0; start + length <= query.length(); start++) {
+                Integer id = descriptionIds.get(query.substring(start, start + length));
+                if (id != null) {
+                    matches.add(id);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private void indexDescription(String description) {
+        int id = descriptions.size();
+        descriptions.add(description);
+        descriptionIds.put(description, id);
+        descriptionLengths.merge(description.length(), 1, Integer::sum);
+
+        Set<Integer> grams = new HashSet<>();
+        for (int i = 0; i < description.length(); i++) {
+            grams.add(gramKey(description.charAt(i), '\uFFFF'));
+            if (i + 1 < description.length()) {
+                grams.add(gramKey(description.charAt(i), description.charAt(i + 1)));
+            }
+        }
+        for (int gram : grams) {
+            postings.computeIfAbsent(gram, k -> new IntList()).add(id);
+        }
+    }
+
+    private static int gramKey(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    private void refreshAmountHistograms() {
+        if (staleAmountCategories.isEmpty()) {
+            return;
+        }
+        for (String category : staleAmountCategories) {
+            Map<Double, Integer> amounts = amountPatterns.get(category);
+            if (amounts == null) {
+                amountHistograms.remove(category);
+            } else {
+                amountHistograms.put(category, new AmountHistogram(amounts));
+            }
+        }
+        staleAmountCategories.clear();
+    }
+
+    /**
+     * Sum over a category's known amounts k (with counts c) of c / (1 + |a - k| / k).
+     * For 0 < k <= a the term is c * k / a, a prefix sum. For k > a it is c / (2 - y)
+     * with y = a / k in (0, 1); y is split into bands and 1 / (2 - y) is expanded as a
+     * power series around each band centre, whose coefficients need only suffix sums
+     * of c / k^m. Amounts that are zero or negative, and non-positive queries, are
+     * evaluated term by term exactly as before.
+     */
+    static class AmountHistogram {
+        private static final int BANDS = 8;
+        private static final int TERMS = 8;
+
+        private final double[] amounts;      // positive amounts, ascending
+        private final double[] prefixCK;     // prefixCK[i] = sum of c*k over amounts[0..i)
+        private final double[][] suffixCInvK; // suffixCInvK[m][i] = sum of c/k^m over amounts[i..]
+        private final double[] otherAmounts; // zero, negative or NaN amounts
+        private final double[] otherCounts;
+        private final double[] allAmounts;
+        private final double[] allCounts;
+
+        AmountHistogram(Map<Double, Integer> histogram) {
+            List<Map.Entry<Double, Integer>> positive = new ArrayList<>();
+            List<Map.Entry<Double, Integer>> other = new ArrayList<>();
+            for (Map.Entry<Double, Integer> entry : histogram.entrySet()) {
+                double k = entry.getKey();
+                if (k > 0 && !Double.isInfinite(k)) {
+                    positive.add(entry);
+                } else {
+                    other.add(entry);
+                }
+            }
+            positive.sort(Map.Entry.comparingByKey());
+
+            int n = positive.size();
+            amounts = new double[n];
+            double[] counts = new double[n];
+            for (int i = 0; i < n; i++) {
+                amounts[i] = positive.get(i).getKey();
+                counts[i] = positive.get(i).getValue();
+            }
+            prefixCK = new double[n + 1];
+            for (int i = 0; i < n; i++) {
+                prefixCK[i + 1] = prefixCK[i] + counts[i] * amounts[i];
+            }
+            suffixCInvK = new double[TERMS + 1][n + 1];
+            for (int m = 0; m <= TERMS; m++) {
+                for (int i = n - 1; i >= 0; i--) {
+                    suffixCInvK[m][i] = suffixCInvK[m][i + 1] + counts[i] / Math.pow(amounts[i], m);
+                }
+            }
+
+            otherAmounts = new double[other.size()];
+            otherCounts = new double[other.size()];
+            for (int i = 0; i < other.size(); i++) {
+                otherAmounts[i] = other.get(i).getKey();
+                otherCounts[i] = other.get(i).getValue();
+            }
+            allAmounts = new double[histogram.size()];
+            allCounts = new double[histogram.size()];
+            int i = 0;
+            for (Map.Entry<Double, Integer> entry : histogram.entrySet()) {
+                allAmounts[i] = entry.getKey();
+                allCounts[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        double similaritySum(double a) {
+            if (!(a > 0) || Double.isInfinite(a)) {
+                double sum = 0;
+                for (int i = 0; i < allAmounts.length; i++) {
+                    sum += similarity(a, allAmounts[i]) * allCounts[i];
+                }
+                return sum;
+            }
+
+            double sum = 0;
+            for (int i = 0; i < otherAmounts.length; i++) {
+                sum += similarity(a, otherAmounts[i]) * otherCounts[i];
+            }
+
+            // 0 < k <= a: similarity is k / a
+            int atOrBelow = upperBound(a);
+            sum += prefixCK[atOrBelow] / a;
+
+            // k > a, band by band in y = a / k, from y close to 1 down to y close to 0
+            int hi = atOrBelow;
+            for (int band = BANDS - 1; band >= 0; band--) {
+                int lo = hi;
+                hi = band == 0 ? amounts.length : upperBound(a * BANDS / band);
+                if (hi <= lo) continue;
+                double centre = (band + 0.5) / BANDS;
+                sum += bandSum(a, centre, lo, hi);
+            }
+            return sum;
+        }
+
+        /**
+         * Sum of c / (2 - y) over amounts[lo..hi), as a series in (y - centre)
+         */
+        private double bandSum(double a, double centre, int lo, int hi) {
+            // moments[m] = sum of c * y^m over the band
+            double[] moments = new double[TERMS + 1];
+            double aPow = 1;
+            for (int m = 0; m <= TERMS; m++) {
+                moments[m] = aPow * (suffixCInvK[m][lo] - suffixCInvK[m][hi]);
+                aPow *= a;
+            }
+
+            double inverse = 1 / (2 - centre);
+            double factor = inverse;
+            double sum = 0;
+            for (int n = 0; n <= TERMS; n++) {
+                // sum of c * (y - centre)^n, expanded binomially
+                double central = 0;
+                double binomial = 1;
+                double centrePow = Math.pow(-centre, n);
+                for (int m = 0; m <= n; m++) {
+                    central += binomial * centrePow * moments[m];
+                    binomial = binomial * (n - m) / (m + 1);
+                    centrePow = m < n ? centrePow / -centre : centrePow;
+                }
+                sum += factor * central;
+                factor *= inverse;
+            }
+            return sum;
+        }
+
+        /**
+         * Number of positive amounts less than or equal to the value
+         */
+        private int upperBound(double value) {
+            int lo = 0, hi = amounts.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (amounts[mid] <= value) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private static double similarity(double amount, double knownAmount) {
+            return 1.0 / (1.0 + Math.abs(amount - knownAmount) / knownAmount);
+        }
+    }
+
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
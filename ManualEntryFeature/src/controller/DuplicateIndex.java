@@ -0,0 +1,173 @@
+package controller;
+
+import model.Transaction;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content index of the ledger: (type, amount, date, note, source) -> ids of the
+ * transactions with that content. Registered as a TransactionChangeListener on the
+ * controller and updated with every add, update and delete, so an import can tell in
+ * constant time whether a row is already in the ledger. The category is not part of
+ * the key, since it is assigned after the row is read.
+ */
+public class DuplicateIndex implements TransactionController.TransactionChangeListener {
+
+    /**
+     * What an import does with a row whose content is already in the ledger
+     */
+    public enum Policy {
+        KEEP,   // import it anyway
+        SKIP,   // leave it out
+        FLAG,   // import it and list it in the report
+        MERGE   // leave it out, but give its category to the existing row if that one has none
+    }
+
+    /**
+     * Content of one transaction; notes and sources are compared trimmed, null as empty
+     */
+    static final class Key {
+        private final Transaction.Type type;
+        private final long amountBits;
+        private final long epochDay;
+        private final String note;
+        private final String source;
+        private final int hash;
+
+        Key(Transaction t) {
+            this.type = t.getType();
+            // 0.0 and -0.0 are the same amount
+            this.amountBits = t.getAmount() == 0 ? 0 : Double.doubleToLongBits(t.getAmount());
+            this.epochDay = t.getDate() == null ? Long.MIN_VALUE : t.getDate().toEpochDay();
+            this.note = t.getNote() == null ? "" : t.getNote().trim();
+            this.source = t.getSource() == null ? "" : t.getSource().trim();
+            int h = type == null ? 0 : type.hashCode();
+            h = 31 * h + Long.hashCode(amountBits);
+            h = 31 * h + Long.hashCode(epochDay);
+            h = 31 * h + note.hashCode();
+            h = 31 * h + source.hashCode();
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && type == other.type && amountBits == other.amountBits
+                    && epochDay == other.epochDay && note.equals(other.note) && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Ids of the transactions that share one key; almost always a single id
+    private static final class Ids {
+        long[] ids = new long[1];
+        int size;
+
+        void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private final Map<Key, Ids> index = new HashMap<>();
+
+    @Override
+    public void onTransactionsChanged() {
+        // The index is kept current by the fine-grained callbacks
+    }
+
+    @Override
+    public synchronized void onTransactionsAdded(List<Transaction> added) {
+        for (Transaction t : added) {
+            add(t);
+        }
+    }
+
+    @Override
+    public synchronized void onTransactionRemoved(Transaction removed) {
+        remove(removed);
+    }
+
+    @Override
+    public synchronized void onTransactionUpdated(Transaction before, Transaction after) {
+        remove(before);
+        add(after);
+    }
+
+    @Override
+    public synchronized void onTransactionsReloaded(List<Transaction> all) {
+        index.clear();
+        for (Transaction t : all) {
+            add(t);
+        }
+    }
+
+    /**
+     * Whether a transaction with the same content is in the ledger
+     */
+    public synchronized boolean contains(Transaction t) {
+        return index.containsKey(new Key(t));
+    }
+
+    /**
+     * Ids below a bound of the transactions with the given content, in ascending order
+     */
+    synchronized long[] idsBefore(Key key, long boundId) {
+        Ids ids = index.get(key);
+        if (ids == null) {
+            return new long[0];
+        }
+        long[] result = new long[ids.size];
+        int n = 0;
+        for (int i = 0; i < ids.size; i++) {
+            if (ids.ids[i] < boundId) {
+                result[n++] = ids.ids[i];
+            }
+        }
+        result = Arrays.copyOf(result, n);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Number of distinct contents in the ledger
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    private void add(Transaction t) {
+        index.computeIfAbsent(new Key(t), k -> new Ids()).add(t.getId());
+    }
+
+    private void remove(Transaction t) {
+        Key key = new Key(t);
+        Ids ids = index.get(key);
+        if (ids != null) {
+            ids.remove(t.getId());
+            if (ids.size == 0) {
+                index.remove(key);
+            }
+        }
+    }
+}
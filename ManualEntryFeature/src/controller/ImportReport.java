@@ -0,0 +1,142 @@
+package controller;
+
+import model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of one import: how many rows were added, and which ones were already in
+ * the ledger. It also carries the duplicate matching state between the batches of
+ * one file, so one report must be used for every batch of that file.
+ *
+ * Rows are matched as a multiset: if the ledger held a row twice and the file has
+ * it three times, the first two copies are duplicates and the third is new. Rows of
+ * the import itself never count as the ledger, so repeated rows within one file
+ * (two identical coffees on one day) are all kept.
+ */
+public class ImportReport {
+
+    // Duplicates listed in full; the rest are only counted
+    private static final int MAX_LISTED = 100;
+
+    private final DuplicateIndex.Policy policy;
+
+    // Ids from here on belong to rows of this import
+    private long firstImportedId = -1;
+    // Copies seen so far in this import, only for contents that were already in the ledger
+    private final Map<DuplicateIndex.Key, int[]> occurrences = new HashMap<>();
+
+    private long imported;
+    private long skipped;
+    private long flagged;
+    private long merged;
+    private final List<Transaction> duplicates = new ArrayList<>();
+
+    public ImportReport(DuplicateIndex.Policy policy) {
+        this.policy = policy;
+    }
+
+    public DuplicateIndex.Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Rows added to the ledger, including flagged duplicates
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getFlagged() {
+        return flagged;
+    }
+
+    /**
+     * Duplicates left out and folded into their existing row
+     */
+    public long getMerged() {
+        return merged;
+    }
+
+    public long getDuplicateCount() {
+        return skipped + flagged + merged;
+    }
+
+    /**
+     * The first duplicates found, in file order
+     */
+    public List<Transaction> getDuplicates() {
+        return Collections.unmodifiableList(duplicates);
+    }
+
+    /**
+     * One line for the status bar or log
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder("Imported ").append(imported).append(" transactions");
+        if (skipped > 0) summary.append(", skipped ").append(skipped).append(" duplicates");
+        if (flagged > 0) summary.append(", flagged ").append(flagged).append(" possible duplicates");
+        if (merged > 0) summary.append(", merged ").append(merged).append(" duplicates into existing rows");
+        return summary.toString();
+    }
+
+    /**
+     * Called before each batch with the next id the controller will assign
+     */
+    void beginBatch(long nextId) {
+        if (firstImportedId < 0) {
+            firstImportedId = nextId;
+        }
+    }
+
+    /**
+     * The existing transaction this row duplicates, or -1 if it is new
+     */
+    long matchExisting(DuplicateIndex index, Transaction t) {
+        DuplicateIndex.Key key = new DuplicateIndex.Key(t);
+        long[] existing = index.idsBefore(key, firstImportedId);
+        int[] seen = occurrences.get(key);
+        if (seen == null) {
+            if (existing.length == 0) {
+                return -1;
+            }
+            seen = new int[1];
+            occurrences.put(key, seen);
+        }
+        int copy = seen[0]++;
+        return copy < existing.length ? existing[copy] : -1;
+    }
+
+    void recordImported(int rows) {
+        imported += rows;
+    }
+
+    void recordSkipped(Transaction t) {
+        skipped++;
+        list(t);
+    }
+
+    void recordFlagged(Transaction t) {
+        flagged++;
+        list(t);
+    }
+
+    void recordMerged(Transaction t) {
+        merged++;
+        list(t);
+    }
+
+    private void list(Transaction t) {
+        if (duplicates.size() < MAX_LISTED) {
+            duplicates.add(t);
+        }
+    }
+}
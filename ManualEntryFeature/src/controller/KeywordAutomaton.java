@@ -0,0 +1,223 @@
+package controller;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over a category -> keywords map.
+ * Built once per keyword map; scoring a text is a single pass over its characters
+ * that reports every keyword occurrence together with whether it sits on word
+ * boundaries, which is what the old per-keyword "\\b" regex checked.
+ * Instances are immutable and safe to share between threads.
+ */
+public class KeywordAutomaton {
+
+    private static final double EXACT_MATCH_SCORE = 5.0;
+    private static final double WORD_MATCH_SCORE = 3.0;
+    private static final double PARTIAL_MATCH_SCORE = 1.5;
+    private static final double LONG_KEYWORD_BONUS = 0.5;
+
+    private final String[] categories;       // in the iteration order of the source map
+    private final String[] patterns;         // distinct lower-cased keywords
+    private final int[][] patternCategories; // category indexes per pattern, one entry per listing
+
+    // Trie with sorted edges per state, failure links and merged outputs
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    private final int[][] outputs;
+
+    public KeywordAutomaton(Map<String, List<String>> keywordsMap) {
+        categories = keywordsMap.keySet().toArray(new String[0]);
+
+        Map<String, Integer> patternIds = new LinkedHashMap<>();
+        List<List<Integer>> categoriesByPattern = new ArrayList<>();
+        int categoryIndex = 0;
+        for (List<String> keywords : keywordsMap.values()) {
+            for (String keyword : keywords) {
+                String lower = keyword.toLowerCase();
+                Integer id = patternIds.get(lower);
+                if (id == null) {
+                    id = patternIds.size();
+                    patternIds.put(lower, id);
+                    categoriesByPattern.add(new ArrayList<>());
+                }
+                // A keyword listed twice for a category scores twice, as before
+                categoriesByPattern.get(id).add(categoryIndex);
+            }
+            categoryIndex++;
+        }
+        patterns = patternIds.keySet().toArray(new String[0]);
+        patternCategories = new int[patterns.length][];
+        for (int p = 0; p < patterns.length; p++) {
+            patternCategories[p] = categoriesByPattern.get(p).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // Build the trie
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> own = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        own.add(new ArrayList<>());
+        for (int p = 0; p < patterns.length; p++) {
+            int state = 0;
+            for (char c : patterns[p].toCharArray()) {
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    own.add(new ArrayList<>());
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            own.get(state).add(p);
+        }
+
+        int states = trie.size();
+        edgeChars = new char[states][];
+        edgeTargets = new int[states][];
+        for (int s = 0; s < states; s++) {
+            TreeMap<Character, Integer> edges = trie.get(s);
+            edgeChars[s] = new char[edges.size()];
+            edgeTargets[s] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[s][i] = edge.getKey();
+                edgeTargets[s][i] = edge.getValue();
+                i++;
+            }
+        }
+
+        // Failure links and outputs, breadth first so parents are done before children
+        fail = new int[states];
+        outputs = new int[states][];
+        outputs[0] = new int[0];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[0]) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> merged = new ArrayList<>(own.get(state));
+            for (int out : outputs[fail[state]]) {
+                merged.add(out);
+            }
+            outputs[state] = merged.stream().mapToInt(Integer::intValue).toArray();
+
+            for (int i = 0; i < edgeChars[state].length; i++) {
+                char c = edgeChars[state][i];
+                int child = edgeTargets[state][i];
+                int f = fail[state];
+                while (f != 0 && next(f, c) < 0) {
+                    f = fail[f];
+                }
+                int target = next(f, c);
+                fail[child] = target >= 0 ? target : 0;
+                queue.add(child);
+            }
+        }
+    }
+
+    private int next(int state, char c) {
+        int i = Arrays.binarySearch(edgeChars[state], c);
+        return i >= 0 ? edgeTargets[state][i] : -1;
+    }
+
+    /**
+     * Score every category against a lower-cased text.
+     * Per keyword occurrence: 5 for an exact match of the whole text, 3 when the
+     * keyword sits on word boundaries, 1.5 otherwise, plus 0.5 for keywords longer
+     * than four characters.
+     * @return scores of the categories that matched, filled in source-map order
+     */
+    public Map<String, Double> score(String text) {
+        int n = text.length();
+        boolean[] found = new boolean[patterns.length];
+        boolean[] onBoundary = new boolean[patterns.length];
+        // The old check was text.matches(".*\\b" + kw + "\\b.*"), and '.' does not match line breaks
+        boolean boundaryPossible = !hasLineTerminator(text);
+
+        int state = 0;
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            int target = next(state, c);
+            while (target < 0 && state != 0) {
+                state = fail[state];
+                target = next(state, c);
+            }
+            state = target < 0 ? 0 : target;
+
+            for (int p : outputs[state]) {
+                found[p] = true;
+                if (boundaryPossible && !onBoundary[p]) {
+                    int end = i + 1;
+                    int start = end - patterns[p].length();
+                    onBoundary[p] = isBoundary(text, start) && isBoundary(text, end);
+                }
+            }
+        }
+
+        double[] scores = new double[categories.length];
+        for (int p = 0; p < patterns.length; p++) {
+            if (!found[p]) continue;
+            String keyword = patterns[p];
+            double score;
+            if (keyword.length() == n) {
+                score = EXACT_MATCH_SCORE; // Found and as long as the text, so equal to it
+            } else if (onBoundary[p]) {
+                score = WORD_MATCH_SCORE;
+            } else {
+                score = PARTIAL_MATCH_SCORE;
+            }
+            if (keyword.length() > 4) {
+                score += LONG_KEYWORD_BONUS;
+            }
+            for (int category : patternCategories[p]) {
+                scores[category] += score;
+            }
+        }
+
+        Map<String, Double> result = new HashMap<>();
+        for (int c = 0; c < categories.length; c++) {
+            if (scores[c] > 0) {
+                result.put(categories[c], scores[c]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same rule as java.util.regex "\\b": a word character on exactly one side
+     */
+    private static boolean isBoundary(String text, int index) {
+        boolean left = index > 0 && isWordAt(text, Character.codePointBefore(text, index), index - 1);
+        boolean right = index < text.length() && isWordAt(text, Character.codePointAt(text, index), index);
+        return left != right;
+    }
+
+    private static boolean isWordAt(String text, int codePoint, int index) {
+        if (codePoint == '_' || Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+        if (Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+            return false;
+        }
+        // A combining mark counts as part of the word it is attached to
+        for (int i = index; i >= 0; i--) {
+            int ch = Character.codePointAt(text, i);
+            if (Character.isLetterOrDigit(ch)) return true;
+            if (Character.getType(ch) != Character.NON_SPACING_MARK) return false;
+        }
+        return false;
+    }
+
+    private static boolean hasLineTerminator(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
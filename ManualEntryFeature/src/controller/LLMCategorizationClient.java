@@ -0,0 +1,303 @@
+package controller;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import model.Transaction;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Batch client for the chat-completions categorization API.
+ * Packs many transactions into one prompt that asks for a JSON answer, sends the
+ * batches concurrently through java.net.http.HttpClient with timeouts, and retries
+ * failed requests with exponential backoff. Rows the API does not answer are left
+ * null so the caller can fall back to the local model for just those rows.
+ * A client keeps its HttpClient and worker threads between calls, so build one
+ * and reuse it; fromConfig hands out a shared one.
+ */
+public class LLMCategorizationClient {
+
+    private static final String MODEL = "deepseek-chat";
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 8000;
+    // Idle worker threads end after this long
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+
+    // Client handed out by fromConfig, and the settings it was built with
+    private static LLMCategorizationClient shared;
+    private static List<Object> sharedSettings;
+
+    private final URI apiUri;
+    private final String apiKey;
+    private final int batchSize;
+    private final int parallelism;
+    private final Duration requestTimeout;
+    private final int maxRetries;
+    private final HttpClient httpClient;
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * @param apiUrl chat-completions endpoint, e.g. a local stub server in tests
+     * @param connectTimeout connect timeout, or null for none
+     * @param requestTimeout timeout for the whole response, or null for none
+     */
+    public LLMCategorizationClient(String apiUrl, String apiKey, int batchSize, int parallelism,
+                                   Duration connectTimeout, Duration requestTimeout, int maxRetries) {
+        this.apiUri = URI.create(apiUrl);
+        this.apiKey = apiKey;
+        this.batchSize = Math.max(1, batchSize);
+        this.parallelism = Math.max(1, parallelism);
+        this.requestTimeout = requestTimeout;
+        this.maxRetries = Math.max(0, maxRetries);
+
+        HttpClient.Builder builder = HttpClient.newBuilder();
+        if (connectTimeout != null) {
+            builder.connectTimeout(connectTimeout);
+        }
+        this.httpClient = builder.build();
+
+        this.workers = new ThreadPoolExecutor(this.parallelism, this.parallelism,
+                WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "llm-categorizer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The client for the current AppConfig settings. The same client is returned
+     * until a setting changes, so its connections and threads are reused.
+     */
+    public static synchronized LLMCategorizationClient fromConfig() {
+        int connectMillis = AppConfig.getApiConnectTimeoutMillis();
+        int readMillis = AppConfig.getApiReadTimeoutMillis();
+        List<Object> settings = Arrays.asList(AppConfig.getApiUrl(), AppConfig.getApiKey(),
+                AppConfig.getApiBatchSize(), AppConfig.getApiParallelism(),
+                connectMillis, readMillis, AppConfig.getApiMaxRetries());
+        if (shared == null || !settings.equals(sharedSettings)) {
+            // A replaced client's idle threads end by themselves
+            shared = new LLMCategorizationClient(
+                    AppConfig.getApiUrl(),
+                    AppConfig.getApiKey(),
+                    AppConfig.getApiBatchSize(),
+                    AppConfig.getApiParallelism(),
+                    connectMillis > 0 ? Duration.ofMillis(connectMillis) : null,
+                    readMillis > 0 ? Duration.ofMillis(readMillis) : null,
+                    AppConfig.getApiMaxRetries());
+            sharedSettings = settings;
+        }
+        return shared;
+    }
+
+    /**
+     * Receives progress updates as batches complete; called from worker threads
+     */
+    public interface BatchListener {
+        void onBatchDone(int rowsDone, int total);
+    }
+
+    /**
+     * Categorize transactions in batches.
+     * @param listener optional progress listener, may be null
+     * @param cancelled checked before each request; remaining batches are skipped once it is true
+     * @return one category per transaction, in input order; null where the API gave no usable answer
+     */
+    public List<String> categorize(List<Transaction> transactions, BatchListener listener, BooleanSupplier cancelled) {
+        String[] categories = new String[transactions.size()];
+        if (transactions.isEmpty()) {
+            return Arrays.asList(categories);
+        }
+
+        AtomicInteger done = new AtomicInteger();
+        List<Future<?>> pending = new ArrayList<>();
+        try {
+            for (int start = 0; start < transactions.size(); start += batchSize) {
+                int from = start;
+                int to = Math.min(transactions.size(), start + batchSize);
+                pending.add(workers.submit(() -> {
+                    if (cancelled == null || !cancelled.getAsBoolean()) {
+                        List<String> batch = sendBatch(transactions.subList(from, to), cancelled);
+                        for (int i = 0; i < batch.size(); i++) {
+                            categories[from + i] = batch.get(i);
+                        }
+                    }
+                    int completed = done.addAndGet(to - from);
+                    if (listener != null) {
+                        listener.onBatchDone(completed, categories.length);
+                    }
+                }));
+            }
+            for (Future<?> future : pending) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    System.err.println("Batch categorization failed: " + e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // The workers are shared with later calls; stop only this call's batches
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return Arrays.asList(categories);
+    }
+
+    /**
+     * Send one batch, retrying transient failures
+     * @return one category per transaction, null where the answer was missing or unusable
+     */
+    private List<String> sendBatch(List<Transaction> batch, BooleanSupplier cancelled) {
+        String[] result = new String[batch.size()];
+        HttpRequest.Builder request = HttpRequest.newBuilder(apiUri)
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + apiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(buildRequestBody(batch), StandardCharsets.UTF_8));
+        if (requestTimeout != null) {
+            request.timeout(requestTimeout);
+        }
+
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (cancelled != null && cancelled.getAsBoolean()) {
+                break;
+            }
+            try {
+                HttpResponse<String> response = httpClient.send(request.build(),
+                        HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                int status = response.statusCode();
+                if (status == 200) {
+                    parseResponse(response.body(), batch, result);
+                    return Arrays.asList(result);
+                }
+                if (status != 429 && status < 500) {
+                    System.err.println("Batch API call rejected with HTTP " + status + ": " + response.body());
+                    break;
+                }
+                System.err.println("Batch API call failed with HTTP " + status + ", attempt " + (attempt + 1));
+                backoff = Math.max(backoff, retryAfterMillis(response));
+            } catch (IOException e) {
+                System.err.println("Batch API call failed: " + e.getMessage() + ", attempt " + (attempt + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                // Unparseable answer; retrying the same prompt rarely helps
+                System.err.println("Could not parse batch API response: " + e.getMessage());
+                break;
+            }
+
+            if (attempt < maxRetries) {
+                try {
+                    Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 4 + 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    private static long retryAfterMillis(HttpResponse<String> response) {
+        return response.headers().firstValue("Retry-After").map(value -> {
+            try {
+                return Long.parseLong(value.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                return 0L;
+            }
+        }).orElse(0L);
+    }
+
+    /**
+     * Build the chat-completions request asking for a JSON object with one result per id
+     */
+    static String buildRequestBody(List<Transaction> batch) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("Classify each of the following transactions into the most appropriate category.\n\n");
+        prompt.append("Expense categories: ").append(String.join(", ", MLTransactionCategorizer.EXPENSE_CATEGORIES)).append("\n");
+        prompt.append("Income categories: ").append(String.join(", ", MLTransactionCategorizer.INCOME_CATEGORIES)).append("\n\n");
+        prompt.append("Transactions (id | type | description | amount | date):\n");
+        for (int i = 0; i < batch.size(); i++) {
+            Transaction t = batch.get(i);
+            String description = t.getNote();
+            if (description == null || description.isEmpty()) {
+                description = t.getSource();
+            }
+            prompt.append(i).append(" | ")
+                    .append(t.getType()).append(" | ")
+                    .append(description == null ? "" : description.replace('\n', ' ')).append(" | ")
+                    .append(t.getAmount()).append(" | ")
+                    .append(t.getDate() != null ? t.getDate().toString() : "").append("\n");
+        }
+        prompt.append("\nUse an expense category for EXPENSE rows and an income category for INCOME rows. ");
+        prompt.append("Reply with JSON only, in the form {\"results\":[{\"id\":0,\"category\":\"Food\"}]}, ");
+        prompt.append("with exactly one entry per transaction id.");
+
+        StringWriter body = new StringWriter();
+        try (JsonWriter json = new JsonWriter(body)) {
+            json.beginObject();
+            json.name("model").value(MODEL);
+            json.name("messages").beginArray();
+            json.beginObject().name("role").value("user").name("content").value(prompt.toString()).endObject();
+            json.endArray();
+            json.name("temperature").value(0.0);
+            json.name("max_tokens").value(32L + 24L * batch.size());
+            json.name("response_format").beginObject().name("type").value("json_object").endObject();
+            json.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter does not throw
+        }
+        return body.toString();
+    }
+
+    /**
+     * Fill result[id] from the model's {"results":[{"id":..,"category":..}]} answer
+     */
+    static void parseResponse(String responseBody, List<Transaction> batch, String[] result) {
+        JsonObject response = JsonParser.parseString(responseBody).getAsJsonObject();
+        String content = response.getAsJsonArray("choices").get(0).getAsJsonObject()
+                .getAsJsonObject("message").get("content").getAsString().trim();
+        // Some models wrap JSON answers in a markdown code fence
+        if (content.startsWith("```")) {
+            content = content.substring(content.indexOf('\n') + 1);
+            int fence = content.lastIndexOf("```");
+            if (fence >= 0) {
+                content = content.substring(0, fence);
+            }
+        }
+
+        JsonElement parsed = JsonParser.parseString(content);
+        JsonArray results = parsed.isJsonArray()
+                ? parsed.getAsJsonArray()
+                : parsed.getAsJsonObject().getAsJsonArray("results");
+        for (JsonElement element : results) {
+            JsonObject entry = element.getAsJsonObject();
+            if (!entry.has("id") || !entry.has("category")) continue;
+            int id = entry.get("id").getAsInt();
+            if (id < 0 || id >= batch.size()) continue;
+            result[id] = MLTransactionCategorizer.toValidCategory(entry.get("category").getAsString());
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package controller;
+
+import model.Transaction;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Compact binary columnar ledger file.
+ *
+ * Layout (big-endian):
+ *   header   magic, version, rowCount, dictSize, dictOffset
+ *   columns  id long[n], amount double[n], date int[n], editTime int[n],
+ *            category int[n], note int[n], source int[n], type byte[n]
+ *   dict     int[dictSize + 1] byte offsets, then the UTF-8 bytes of every string
+ *
+ * Dates are stored as epoch days and strings as dictionary ids (-1 for null).
+ * The file is loaded eagerly: open reads it whole into a heap buffer in one
+ * sequential read and checks every string id, since each caller copies all the
+ * rows out anyway. Rows are decoded into Transactions only when they are first read.
+ * Nothing stays mapped or open, so the file can be replaced right away.
+ */
+public class LedgerFile {
+
+    private static final int MAGIC = 0x5046544C; // "PFTL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    // Bytes per row over all columns
+    private static final int ROW_SIZE = 8 + 8 + 4 + 4 + 4 + 4 + 4 + 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final Transaction.Type[] TYPES = Transaction.Type.values();
+
+    private final File file;
+    // Null once closed
+    private ByteBuffer buffer;
+    private final int rowCount;
+    private final int dictSize;
+    private final int dictOffset;
+    private final String[] dictCache;
+
+    private final int idColumn;
+    private final int amountColumn;
+    private final int dateColumn;
+    private final int editTimeColumn;
+    private final int categoryColumn;
+    private final int noteColumn;
+    private final int sourceColumn;
+    private final int typeColumn;
+
+    private LedgerFile(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a ledger file: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported ledger version " + buffer.getInt(4) + " in " + file);
+        }
+        // A truncated or damaged file must fail here, not on some later row read
+        int rows = buffer.getInt(8);
+        int strings = buffer.getInt(12);
+        long offset = buffer.getLong(16);
+        long blob = offset + 4L * (strings + 1);
+        if (rows < 0 || strings < 0 || offset != HEADER_SIZE + (long) rows * ROW_SIZE
+                || blob > buffer.capacity()
+                || blob + Integer.toUnsignedLong(buffer.getInt((int) offset + 4 * strings)) > buffer.capacity()) {
+            throw new IOException("Truncated or damaged ledger file: " + file);
+        }
+        this.rowCount = rows;
+        this.dictSize = strings;
+        this.dictOffset = (int) offset;
+        this.dictCache = new String[dictSize];
+
+        idColumn = HEADER_SIZE;
+        amountColumn = idColumn + 8 * rowCount;
+        dateColumn = amountColumn + 8 * rowCount;
+        editTimeColumn = dateColumn + 4 * rowCount;
+        categoryColumn = editTimeColumn + 4 * rowCount;
+        noteColumn = categoryColumn + 4 * rowCount;
+        sourceColumn = noteColumn + 4 * rowCount;
+        typeColumn = sourceColumn + 4 * rowCount;
+        validateStrings();
+    }
+
+    // Every string id and dictionary offset must be in range, so a damaged file fails to open
+    private void validateStrings() throws IOException {
+        int blobSize = buffer.capacity() - (dictOffset + 4 * (dictSize + 1));
+        int previous = 0;
+        for (int i = 0; i <= dictSize; i++) {
+            int offset = buffer.getInt(dictOffset + 4 * i);
+            if (offset < previous || offset > blobSize) {
+                throw new IOException("Damaged string table in ledger file: " + file);
+            }
+            previous = offset;
+        }
+        for (int column : new int[]{categoryColumn, noteColumn, sourceColumn}) {
+            for (int row = 0; row < rowCount; row++) {
+                int id = buffer.getInt(column + 4 * row);
+                if (id < -1 || id >= dictSize) {
+                    throw new IOException("String id " + id + " out of range in row " + row + " of " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a ledger file and check it. Rows are decoded when they are accessed.
+     */
+    public static LedgerFile open(File file) throws IOException {
+        if (file.length() > Integer.MAX_VALUE) {
+            throw new IOException("Ledger file too large: " + file);
+        }
+        return new LedgerFile(file, ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Drop the file's bytes once every row has been copied out.
+     * Nothing may read from this ledger or its list views afterwards.
+     */
+    public void close() {
+        buffer = null;
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    public long getId(int row) {
+        return buffer.getLong(idColumn + 8 * row);
+    }
+
+    public double getAmount(int row) {
+        return buffer.getDouble(amountColumn + 8 * row);
+    }
+
+    public int getEpochDay(int row) {
+        return buffer.getInt(dateColumn + 4 * row);
+    }
+
+    public int getEditEpochDay(int row) {
+        return buffer.getInt(editTimeColumn + 4 * row);
+    }
+
+    public Transaction.Type getType(int row) {
+        byte type = buffer.get(typeColumn + row);
+        return type < 0 || type >= TYPES.length ? null : TYPES[type];
+    }
+
+    public String getCategory(int row) {
+        return string(buffer.getInt(categoryColumn + 4 * row));
+    }
+
+    public String getNote(int row) {
+        return string(buffer.getInt(noteColumn + 4 * row));
+    }
+
+    public String getSource(int row) {
+        return string(buffer.getInt(sourceColumn + 4 * row));
+    }
+
+    /**
+     * Decode one row into a Transaction
+     */
+    public Transaction get(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+        }
+        Transaction t = new Transaction(getType(row), getCategory(row), getAmount(row),
+                toDate(getEpochDay(row)), getNote(row), getSource(row), toDate(getEditEpochDay(row)));
+        t.setId(getId(row));
+        return t;
+    }
+
+    /**
+     * Largest id in the file, read from the id column without decoding rows
+     */
+    public long maxId() {
+        long max = 0;
+        for (int row = 0; row < rowCount; row++) {
+            max = Math.max(max, buffer.getLong(idColumn + 8 * row));
+        }
+        return max;
+    }
+
+    /**
+     * Whether rows are already in newest-first date order, checked on the date column only
+     */
+    public boolean isSortedByDateDescending() {
+        for (int row = 1; row < rowCount; row++) {
+            if (getEpochDay(row - 1) < getEpochDay(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String string(int id) {
+        if (id < 0) {
+            return null;
+        }
+        String cached = dictCache[id];
+        if (cached == null) {
+            int start = buffer.getInt(dictOffset + 4 * id);
+            int end = buffer.getInt(dictOffset + 4 * (id + 1));
+            int blob = dictOffset + 4 * (dictSize + 1);
+            byte[] bytes = new byte[end - start];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(blob + start);
+            slice.get(bytes);
+            cached = new String(bytes, StandardCharsets.UTF_8);
+            dictCache[id] = cached;
+        }
+        return cached;
+    }
+
+    private static LocalDate toDate(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    /**
+     * A list view over the file's rows.
+     * Rows are decoded on first access and kept, so repeated reads return the same object.
+     * The first structural change copies the rows onto the heap and the view behaves
+     * like an ordinary ArrayList from then on.
+     */
+    public List<Transaction> asList() {
+        return new LedgerTransactionList(this);
+    }
+
+    static class LedgerTransactionList extends AbstractList<Transaction> implements RandomAccess {
+        private LedgerFile ledger;
+        private Transaction[] decoded;
+        private ArrayList<Transaction> materialized;
+
+        LedgerTransactionList(LedgerFile ledger) {
+            this.ledger = ledger;
+            this.decoded = new Transaction[ledger.size()];
+        }
+
+        /**
+         * The file backing this view while it is still unmodified, otherwise null
+         */
+        LedgerFile backingLedger() {
+            return materialized == null ? ledger : null;
+        }
+
+        @Override
+        public Transaction get(int index) {
+            if (materialized != null) {
+                return materialized.get(index);
+            }
+            Transaction t = decoded[index];
+            if (t == null) {
+                t = ledger.get(index);
+                decoded[index] = t;
+            }
+            return t;
+        }
+
+        @Override
+        public int size() {
+            return materialized != null ? materialized.size() : ledger.size();
+        }
+
+        private ArrayList<Transaction> heap() {
+            if (materialized == null) {
+                ArrayList<Transaction> copy = new ArrayList<>(ledger.size() + 16);
+                for (int i = 0; i < ledger.size(); i++) {
+                    copy.add(get(i));
+                }
+                materialized = copy;
+                decoded = null;
+                // Let the file's bytes be collected once nothing reads from them any more
+                ledger = null;
+            }
+            return materialized;
+        }
+
+        @Override
+        public Transaction set(int index, Transaction element) {
+            return heap().set(index, element);
+        }
+
+        @Override
+        public void add(int index, Transaction element) {
+            heap().add(index, element);
+            modCount++;
+        }
+
+        @Override
+        public Transaction remove(int index) {
+            modCount++;
+            return heap().remove(index);
+        }
+
+        @Override
+        public void clear() {
+            modCount++;
+            materialized = new ArrayList<>();
+            decoded = null;
+            ledger = null;
+        }
+
+        @Override
+        public void sort(Comparator<? super Transaction> c) {
+            heap().sort(c);
+            modCount++;
+        }
+    }
+
+    /**
+     * Write transactions to a ledger file, replacing it atomically
+     */
+    public static void write(File file, List<Transaction> transactions) throws IOException {
+        int n = transactions.size();
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] categories = new int[n];
+        int[] notes = new int[n];
+        int[] sources = new int[n];
+        for (int i = 0; i < n; i++) {
+            Transaction t = transactions.get(i);
+            categories[i] = intern(t.getCategory(), ids, strings);
+            notes[i] = intern(t.getNote(), ids, strings);
+            sources[i] = intern(t.getSource(), ids, strings);
+        }
+
+        byte[][] encoded = new byte[strings.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        long dictOffset = HEADER_SIZE + (long) n * ROW_SIZE;
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(encoded.length);
+            out.writeLong(dictOffset);
+
+            for (Transaction t : transactions) out.writeLong(t.getId());
+            for (Transaction t : transactions) out.writeDouble(t.getAmount());
+            for (Transaction t : transactions) out.writeInt(toEpochDay(t.getDate()));
+            for (Transaction t : transactions) out.writeInt(toEpochDay(t.getEditTime()));
+            for (int i = 0; i < n; i++) out.writeInt(categories[i]);
+            for (int i = 0; i < n; i++) out.writeInt(notes[i]);
+            for (int i = 0; i < n; i++) out.writeInt(sources[i]);
+            for (Transaction t : transactions) out.writeByte(t.getType() == null ? -1 : t.getType().ordinal());
+
+            int offset = 0;
+            for (byte[] bytes : encoded) {
+                out.writeInt(offset);
+                offset += bytes.length;
+            }
+            out.writeInt(offset);
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+        }
+        if (tmp.length() > Integer.MAX_VALUE) {
+            Files.deleteIfExists(tmp.toPath());
+            throw new IOException("Ledger too large for a single file: " + n + " rows");
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int intern(String value, Map<String, Integer> ids, List<String> strings) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = strings.size();
+            ids.put(value, id);
+            strings.add(value);
+        }
+        return id;
+    }
+
+    /**
+     * Convert a JSON transaction file into the binary ledger format
+     */
+    public static void convertJsonToLedger(File jsonFile, File ledgerFile) throws IOException {
+        List<Transaction> transactions = TransactionJournal.readJsonSnapshot(jsonFile);
+        write(ledgerFile, transactions);
+    }
+
+    /**
+     * Convert a binary ledger back into the pretty-printed JSON format
+     */
+    public static void convertLedgerToJson(File ledgerFile, File jsonFile) throws IOException {
+        LedgerFile ledger = open(ledgerFile);
+        try {
+            TransactionJournal.writeJsonSnapshot(jsonFile, ledger.asList());
+        } finally {
+            ledger.close();
+        }
+    }
+}
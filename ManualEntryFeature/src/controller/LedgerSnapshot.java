@@ -0,0 +1,89 @@
+package controller;
+
+import model.Transaction;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * An immutable copy of a ledger at one version, from TransactionController.snapshot().
+ * Any thread can read it for as long as it likes while the controller keeps changing;
+ * it never sees half of an edit. The date index and totals are built from the copy on
+ * first use, so a snapshot that only lists rows does not pay for them.
+ */
+public class LedgerSnapshot {
+
+    private final long version;
+    private final TransactionStore store;
+
+    // Built on first use
+    private TransactionDateIndex dateIndex;
+    private TransactionRollup rollup;
+
+    LedgerSnapshot(long version, TransactionStore store) {
+        this.version = version;
+        this.store = store;
+    }
+
+    /**
+     * Increases with every change to the ledger; equal versions hold the same rows
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * All transactions, newest first; Transaction objects are built per access
+     */
+    public List<Transaction> getTransactions() {
+        return Collections.unmodifiableList(store.asList());
+    }
+
+    /**
+     * Date index over this snapshot's rows
+     */
+    public synchronized TransactionDateIndex getDateIndex() {
+        if (dateIndex == null) {
+            dateIndex = new TransactionDateIndex(store);
+        }
+        return dateIndex;
+    }
+
+    /**
+     * Monthly, per-category and per-day totals of this snapshot's rows
+     */
+    public synchronized TransactionRollup getRollup() {
+        if (rollup == null) {
+            rollup = new TransactionRollup();
+            rollup.onTransactionsReloaded(store.asList());
+        }
+        return rollup;
+    }
+
+    /**
+     * Months that have at least one transaction, oldest first
+     */
+    public SortedSet<YearMonth> getAvailableMonths() {
+        return getDateIndex().months();
+    }
+
+    /**
+     * Categories used by at least one transaction
+     */
+    public SortedSet<String> getUsedCategories() {
+        return store.distinctCategories();
+    }
+
+    /**
+     * The copied rows, for exporters that read columns; never changed after the copy
+     */
+    TransactionStore store() {
+        return store;
+    }
+}
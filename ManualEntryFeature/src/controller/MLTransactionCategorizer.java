@@ -7,6 +7,12 @@ import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.text.SimpleDateFormat;
 import java.time.format.DateTimeFormatter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Machine learning-based transaction classifier
@@ -23,12 +29,45 @@ public class MLTransactionCategorizer {
     // Transaction category weights
     private static Map<String, Integer> categoryFrequency = new HashMap<>();
 
+    // Compiled description and amount statistics, rebuilt when the model is loaded
+    private static CategoryScoreIndex scoreIndex;
+
     // Model files
     private static final String MODEL_FILE = "ml_model.dat";
 
+    // Corrections arriving in a burst are written to disk together, shortly after the last one
+    private static final long SAVE_DELAY_MILLIS = 2000;
+    private static final ScheduledExecutorService MODEL_SAVER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ml-model-saver");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private static volatile boolean modelDirty;
+    // Saves share one temp file; this orders them without holding the model lock during I/O
+    private static final Object SAVE_LOCK = new Object();
+
+    // Categories the API is allowed to answer with
+    static final List<String> EXPENSE_CATEGORIES = Arrays.asList(
+            "Food", "Transport", "Shopping", "Health", "Travel", "Beauty", "Entertainment", "Transfer",
+            "Housing", "Social", "Education", "Communication", "RedPacket", "Investment",
+            "Lending", "Repayment", "Parenting", "Pet", "Other"
+    );
+    static final List<String> INCOME_CATEGORIES = Arrays.asList(
+            "TransferIn", "Salary", "Investment", "RedPacket", "Borrowing", "Receipt", "Other"
+    );
+
+    // API answers for notes seen before, persisted between runs
+    private static final CategoryResponseCache responseCache = CategoryResponseCache.fromConfig();
+
     // Initialize the model
     static {
         loadModel();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (modelDirty) {
+                saveModel();
+            }
+        }, "ml-model-flush"));
     }
 
     private static final Map<String, String> chineseToEnglishCategory = new HashMap<>();
@@ -144,16 +183,17 @@ public class MLTransactionCategorizer {
     /**
      * Load the model data
      */
-    @SuppressWarnings("unchecked")
     private static void loadModel() {
         File modelFile = new File(MODEL_FILE);
         if (modelFile.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(modelFile))) {
-                descriptionPatterns = (Map<String, Map<String, Integer>>) ois.readObject();
-                amountPatterns = (Map<String, Map<Double, Integer>>) ois.readObject();
-                dayOfWeekPatterns = (Map<String, Map<DayOfWeek, Integer>>) ois.readObject();
-                sourcePatterns = (Map<String, Map<String, Integer>>) ois.readObject();
-                categoryFrequency = (Map<String, Integer>) ois.readObject();
+            try {
+                boolean legacy = CategoryModelFile.isLegacyFormat(modelFile);
+                CategoryModelFile.Model model = CategoryModelFile.read(modelFile);
+                descriptionPatterns = model.descriptionPatterns;
+                amountPatterns = model.amountPatterns;
+                dayOfWeekPatterns = model.dayOfWeekPatterns;
+                sourcePatterns = model.sourcePatterns;
+                categoryFrequency = model.categoryFrequency;
 
                 System.out.println("Machine learning model data is loaded");
                 System.out.println("Transaction Description Mode: " + descriptionPatterns.size());
@@ -161,6 +201,14 @@ public class MLTransactionCategorizer {
                 System.out.println("Day of the week mode: " + dayOfWeekPatterns.size());
                 System.out.println("Source Mode: " + sourcePatterns.size());
                 System.out.println("Category Frequency: " + categoryFrequency.size());
+                scoreIndex = new CategoryScoreIndex(descriptionPatterns, amountPatterns, categoryFrequency);
+
+                // Convert a serialized model from an earlier version, keeping the original next to it
+                if (legacy) {
+                    Files.copy(modelFile.toPath(), new File(MODEL_FILE + ".legacy").toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                    saveModel();
+                }
             } catch (Exception e) {
                 System.err.println("Failed to load machine learning model: " + e.getMessage());
                 initializeEmptyModel();
@@ -179,6 +227,7 @@ public class MLTransactionCategorizer {
         dayOfWeekPatterns = new HashMap<>();
         sourcePatterns = new HashMap<>();
         categoryFrequency = new HashMap<>();
+        scoreIndex = new CategoryScoreIndex(descriptionPatterns, amountPatterns, categoryFrequency);
         System.out.println("A new machine learning model was created");
     }
 
@@ -186,15 +235,43 @@ public class MLTransactionCategorizer {
      * Save the model data
      */
     public static void saveModel() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(MODEL_FILE))) {
-            oos.writeObject(descriptionPatterns);
-            oos.writeObject(amountPatterns);
-            oos.writeObject(dayOfWeekPatterns);
-            oos.writeObject(sourcePatterns);
-            oos.writeObject(categoryFrequency);
-            System.out.println("Machine learning model data has been saved");
-        } catch (Exception e) {
-            System.err.println("Saving machine learning model failed: " + e.getMessage());
+        synchronized (SAVE_LOCK) {
+            File tmp = new File(MODEL_FILE + ".tmp");
+            try {
+                Files.write(tmp.toPath(), encodeModel());
+                Files.move(tmp.toPath(), new File(MODEL_FILE).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                System.out.println("Machine learning model data has been saved");
+            } catch (Exception e) {
+                System.err.println("Saving machine learning model failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Snapshot the model into its file format; holds the model lock only while encoding
+     */
+    private static synchronized byte[] encodeModel() {
+        modelDirty = false;
+        CategoryModelFile.Model model = new CategoryModelFile.Model();
+        model.descriptionPatterns = descriptionPatterns;
+        model.amountPatterns = amountPatterns;
+        model.dayOfWeekPatterns = dayOfWeekPatterns;
+        model.sourcePatterns = sourcePatterns;
+        model.categoryFrequency = categoryFrequency;
+        return CategoryModelFile.encode(model);
+    }
+
+    /**
+     * Save the model in the background, a short while after the latest change
+     */
+    private static void scheduleSave() {
+        modelDirty = true;
+        if (saveScheduled.compareAndSet(false, true)) {
+            MODEL_SAVER.schedule(() -> {
+                saveScheduled.set(false);
+                saveModel();
+            }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
         }
     }
 
@@ -202,7 +279,7 @@ public class MLTransactionCategorizer {
      * Learn trading patterns
      * @param transaction Categorized transactions
      */
-    public static void learnFromTransaction(Transaction transaction) {
+    public static synchronized void learnFromTransaction(Transaction transaction) {
         String category = transaction.getCategory();
         String description = transaction.getNote().toLowerCase();
         Double amount = transaction.getAmount();
@@ -235,8 +312,10 @@ public class MLTransactionCategorizer {
         sourceMap.put(source, sourceMap.getOrDefault(source, 0) + 1);
         sourcePatterns.put(category, sourceMap);
 
+        scoreIndex.onLearn(category, description, amount);
+
         // Save the updated model
-        saveModel();
+        scheduleSave();
     }
 
     /**
@@ -250,77 +329,107 @@ public class MLTransactionCategorizer {
             return "Red Packet";
         }
 
-        // Then, try to call the API to classify it
-        String apiCategory = categorizeViaAPI(transaction);
+        // Then, try the cache of earlier API answers, and the API itself on a miss
+        String apiCategory = null;
+        if (isApiConfigured()) {
+            apiCategory = responseCache.get(transaction);
+            if (apiCategory == null) {
+                apiCategory = categorizeViaAPI(transaction);
+                responseCache.put(transaction, apiCategory);
+            }
+        }
         if (apiCategory != null) {
             return apiCategory;
         }
 
         // If the API call fails, roll back to the local model
         System.out.println("API classification fails, and the local model is used for classification");
+        return predictLocally(transaction);
+    }
 
-        // If the model is empty, the default classification is returned
-        if (categoryFrequency.isEmpty()) {
-            return transaction.getType() == Transaction.Type.EXPENSE ? "Other" : "Other";
+    /**
+     * Classify many transactions, sending them to the API in concurrent batches.
+     * Rows the API does not answer fall back to the local model one by one.
+     * @param listener optional batch progress listener, may be null
+     * @param cancelled checked between batches, may be null
+     * @return one category per transaction, in input order; rows left unanswered after
+     *         cancellation are null
+     */
+    public static List<String> predictCategories(List<Transaction> transactions,
+                                                 LLMCategorizationClient.BatchListener listener,
+                                                 java.util.function.BooleanSupplier cancelled) {
+        String[] categories = new String[transactions.size()];
+        boolean useApi = isApiConfigured();
+        List<Transaction> forApi = new ArrayList<>();
+        List<Integer> apiRows = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction t = transactions.get(i);
+            if (isSpringFestivalRedPacket(t)) {
+                categories[i] = "Red Packet";
+            } else if (useApi && (categories[i] = responseCache.get(t)) == null) {
+                forApi.add(t);
+                apiRows.add(i);
+            }
         }
 
-        String description = transaction.getNote() != null ? transaction.getNote().toLowerCase() : "";
-        Double amount = transaction.getAmount();
-        DayOfWeek dayOfWeek = transaction.getDate() != null ? transaction.getDate().getDayOfWeek() : null;
-        String source = transaction.getSource() != null ? transaction.getSource().toLowerCase() : "";
-
-        Map<String, Double> scores = new HashMap<>();
+        if (useApi && !forApi.isEmpty()) {
+            int cached = transactions.size() - forApi.size();
+            List<String> answers = LLMCategorizationClient.fromConfig().categorize(forApi,
+                    listener == null ? null : (done, total) -> listener.onBatchDone(cached + done, categories.length),
+                    cancelled);
+            for (int i = 0; i < answers.size(); i++) {
+                categories[apiRows.get(i)] = answers.get(i);
+                responseCache.put(forApi.get(i), answers.get(i));
+            }
+            System.out.println("API category cache: " + cached + " rows answered without the API, "
+                    + forApi.size() + " sent to the API");
+        }
 
-        // Initialize the scores for all categories as their base frequency
-        for (Map.Entry<String, Integer> entry : categoryFrequency.entrySet()) {
-            String category = entry.getKey();
-            int frequency = entry.getValue();
-            // The base score is the proportion of the category among all transactions
-            double baseScore = (double) frequency / categoryFrequency.values().stream().mapToInt(Integer::intValue).sum();
-            scores.put(category, baseScore);
+        if (cancelled != null && cancelled.getAsBoolean()) {
+            return Arrays.asList(categories);
         }
 
-        // Increase the score for description matching
-        if (descriptionPatterns.containsKey(description)) {
-            Map<String, Integer> categoryMatches = descriptionPatterns.get(description);
-            for (Map.Entry<String, Integer> entry : categoryMatches.entrySet()) {
-                String category = entry.getKey();
-                int count = entry.getValue();
-                // Describing an exact match is a strong signal
-                scores.put(category, scores.getOrDefault(category, 0.0) + count * 3.0);
-            }
-        } else {
-            // Keyword partial match
-            for (Map.Entry<String, Map<String, Integer>> entry : descriptionPatterns.entrySet()) {
-                String knownDesc = entry.getKey();
-                if (description.contains(knownDesc) || knownDesc.contains(description)) {
-                    Map<String, Integer> categoryMatches = entry.getValue();
-                    for (Map.Entry<String, Integer> catEntry : categoryMatches.entrySet()) {
-                        String category = catEntry.getKey();
-                        int count = catEntry.getValue();
-                        // A partial match is given to a lower score
-                        scores.put(category, scores.getOrDefault(category, 0.0) + count * 0.5);
-                    }
-                }
+        int fallbacks = 0;
+        for (int i = 0; i < categories.length; i++) {
+            if (categories[i] == null) {
+                categories[i] = predictLocally(transactions.get(i));
+                fallbacks++;
             }
         }
+        if (fallbacks > 0) {
+            System.out.println(fallbacks + " of " + categories.length + " transactions were classified by the local model");
+        }
+        return Arrays.asList(categories);
+    }
 
-        // Increase the score for the similarity of the amounts
-        for (Map.Entry<String, Map<Double, Integer>> entry : amountPatterns.entrySet()) {
-            String category = entry.getKey();
-            Map<Double, Integer> amountMap = entry.getValue();
+    /**
+     * Cache of API answers, with hit and miss counters
+     */
+    public static CategoryResponseCache getResponseCache() {
+        return responseCache;
+    }
 
-            // Check patterns for similar amounts
-            for (Map.Entry<Double, Integer> amountEntry : amountMap.entrySet()) {
-                double knownAmount = amountEntry.getKey();
-                int count = amountEntry.getValue();
+    private static boolean isApiConfigured() {
+        return AppConfig.isUseAPI() && !AppConfig.getApiUrl().isEmpty() && !AppConfig.getApiKey().isEmpty();
+    }
 
-                // Calculate the similarity of the amounts (the closer the amounts, the higher the score)
-                double similarity = 1.0 / (1.0 + Math.abs(amount - knownAmount) / knownAmount);
-                scores.put(category, scores.getOrDefault(category, 0.0) + similarity * count * 0.5);
-            }
+    /**
+     * Classify with the locally learned patterns only
+     */
+    private static synchronized String predictLocally(Transaction transaction) {
+        // If the model is empty, the default classification is returned
+        if (categoryFrequency.isEmpty()) {
+            return transaction.getType() == Transaction.Type.EXPENSE ? "Other" : "Other";
         }
 
+        String description = transaction.getNote() != null ? transaction.getNote().toLowerCase() : "";
+        Double amount = transaction.getAmount();
+        DayOfWeek dayOfWeek = transaction.getDate() != null ? transaction.getDate().getDayOfWeek() : null;
+        String source = transaction.getSource() != null ? transaction.getSource().toLowerCase() : "";
+
+        // Base frequency, description matches and amount similarity come from the compiled index
+        Map<String, Double> scores = scoreIndex.score(description, amount);
+
         // Increase the score for the Day of the Week pattern
         if (dayOfWeek != null) {
             for (Map.Entry<String, Map<DayOfWeek, Integer>> entry : dayOfWeekPatterns.entrySet()) {
@@ -420,6 +529,8 @@ public class MLTransactionCategorizer {
             conn.setRequestMethod("POST");
             conn.setRequestProperty("Content-Type", "application/json");
             conn.setRequestProperty("Authorization", "Bearer " + apiKey);
+            conn.setConnectTimeout(AppConfig.getApiConnectTimeoutMillis());
+            conn.setReadTimeout(AppConfig.getApiReadTimeoutMillis());
             conn.setDoOutput(true);
 
             try (java.io.OutputStream os = conn.getOutputStream()) {
@@ -467,6 +578,7 @@ public class MLTransactionCategorizer {
 
     /**
      * Parse the DeepSeek API response
+     * @return the category, or null if the response could not be parsed, so that it is neither used nor cached
      */
     private static String parseDeepSeekResponse(String apiResponse) {
         try {
@@ -485,60 +597,45 @@ public class MLTransactionCategorizer {
             content = content.trim();
             System.out.println("Original API response content: " + content);
 
-            List<String> validExpenseCategories = Arrays.asList(
-                    "Food", "Transport", "Shopping", "Health", "Travel", "Beauty", "Entertainment", "Transfer",
-                    "Housing", "Social", "Education", "Communication", "RedPacket", "Investment",
-                    "Lending", "Repayment", "Parenting", "Pet", "Other"
-            );
-
-            List<String> validIncomeCategories = Arrays.asList(
-                    "TransferIn", "Salary", "Investment", "RedPacket", "Borrowing", "Receipt", "Other"
-            );
-
-            // First, try to match the English category directly
-            if (validExpenseCategories.contains(content) || validIncomeCategories.contains(content)) {
-                // If it is directly in English, there is no need to convert
-                System.out.println("The API returns a valid English category");
-                return content;
-            }
+            return toValidCategory(content);
+        } catch (Exception e) {
+            System.err.println("Parsing API response failed: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-            // If it is not a valid English category, try converting Chinese to English
-            String englishCategory = toCategoryEnglish(content);
+    /**
+     * Map a category name answered by the API onto one of the valid English categories
+     */
+    static String toValidCategory(String content) {
+        content = content.trim();
 
-            // Check if it is different from the original after conversion (description of the conversion)
-            if (!englishCategory.equals(content)) {
-                System.out.println("The Chinese category'" + content + "'has been converted to the English category'" + englishCategory + "'");
-            }
+        // First, try to match the English category directly
+        if (EXPENSE_CATEGORIES.contains(content) || INCOME_CATEGORIES.contains(content)) {
+            return content;
+        }
 
-            // Check whether the converted English category is valid
-            if (validExpenseCategories.contains(englishCategory) || validIncomeCategories.contains(englishCategory)) {
-                return englishCategory;
-            }
+        // If it is not a valid English category, try converting Chinese to English
+        String englishCategory = toCategoryEnglish(content);
+        if (EXPENSE_CATEGORIES.contains(englishCategory) || INCOME_CATEGORIES.contains(englishCategory)) {
+            return englishCategory;
+        }
 
-            // If it's still not a valid category after conversion, try fuzzy matching
-            System.out.println("Try fuzzy matching categories: " + englishCategory);
-            for (String category : validExpenseCategories) {
-                if (englishCategory.contains(category) || category.contains(englishCategory)) {
-                    System.out.println("Fuzzy Match to Expense Category: " + category);
-                    return category;
-                }
+        // If it's still not a valid category after conversion, try fuzzy matching
+        for (String category : EXPENSE_CATEGORIES) {
+            if (englishCategory.contains(category) || category.contains(englishCategory)) {
+                return category;
             }
-
-            for (String category : validIncomeCategories) {
-                if (englishCategory.contains(category) || category.contains(englishCategory)) {
-                    System.out.println("Fuzzy Match to Income Category: " + category);
-                    return category;
-                }
+        }
+        for (String category : INCOME_CATEGORIES) {
+            if (englishCategory.contains(category) || category.contains(englishCategory)) {
+                return category;
             }
-
-            // If it can't be matched, the default value is returned
-            System.out.println("Unable to match a valid category, returns the default value: Other");
-            return "Other";
-        } catch (Exception e) {
-            System.err.println("Parsing API response failed: " + e.getMessage());
-            e.printStackTrace();
-            return "Other";
         }
+
+        // If it can't be matched, the default value is returned
+        return "Other";
     }
 
     /**
@@ -0,0 +1,349 @@
+package controller;
+
+import model.Transaction;
+
+import java.util.*;
+
+/**
+ * Offline multinomial Naive Bayes classifier over hashed text features.
+ * Notes are tokenized into Chinese character bigrams and Latin words, sources into
+ * words, and the amount into its order of magnitude; each token is hashed into a
+ * fixed number of buckets. Expense and income rows are separate models, trained
+ * from categorized transactions and updated with each user correction.
+ *
+ * Counts live in dense int arrays laid out bucket-major, so the per-class log
+ * likelihoods of one feature are adjacent. The compiled table keeps the log of each
+ * smoothed count and the per-class denominators apart, so a correction rewrites only
+ * the cells of its own features plus one small per-class array instead of the whole
+ * table. Prediction is safe to run from many threads while learning continues; it
+ * may see a concurrent correction's cells partly applied.
+ */
+public class NaiveBayesCategorizer {
+
+    private static final int BUCKET_BITS = 16;
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+    private static final int BUCKET_MASK = BUCKETS - 1;
+
+    // Additive (Laplace) smoothing
+    private static final double ALPHA = 1.0;
+
+    // Seeds that keep note, source and amount features apart
+    private static final int NOTE_SEED = 0x811c9dc5;
+    private static final int SOURCE_SEED = 0x5bd1e995;
+    private static final int AMOUNT_SEED = 0x27d4eb2d;
+
+    private final Map<Transaction.Type, TypeModel> models = new EnumMap<>(Transaction.Type.class);
+
+    public NaiveBayesCategorizer() {
+        for (Transaction.Type type : Transaction.Type.values()) {
+            models.put(type, new TypeModel());
+        }
+    }
+
+    /**
+     * Replace the model with one trained on categorized transactions.
+     * Rows without a type or category are skipped.
+     */
+    public void train(List<Transaction> transactions) {
+        Map<Transaction.Type, TypeModel> trained = new EnumMap<>(Transaction.Type.class);
+        for (Transaction.Type type : Transaction.Type.values()) {
+            trained.put(type, new TypeModel());
+        }
+        Features features = new Features();
+        for (Transaction t : transactions) {
+            if (t.getType() == null || t.getCategory() == null) continue;
+            features.extract(t);
+            trained.get(t.getType()).add(t.getCategory(), features);
+        }
+        for (TypeModel model : trained.values()) {
+            model.compile();
+        }
+        synchronized (models) {
+            models.putAll(trained);
+        }
+    }
+
+    /**
+     * Add one categorized transaction to the model
+     */
+    public void learn(Transaction transaction) {
+        if (transaction.getType() == null || transaction.getCategory() == null) {
+            return;
+        }
+        synchronized (models) {
+            TypeModel model = models.get(transaction.getType());
+            Features features = new Features();
+            features.extract(transaction);
+            int classes = model.classes.size();
+            model.add(transaction.getCategory(), features);
+            if (model.classes.size() != classes || model.compiled == null) {
+                // A new class changes the table's layout
+                model.compile();
+            } else {
+                model.update(transaction.getCategory(), features);
+            }
+        }
+    }
+
+    /**
+     * Whether any transactions have been learned
+     */
+    public boolean isTrained() {
+        synchronized (models) {
+            for (TypeModel model : models.values()) {
+                if (model.documents > 0) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Number of transactions the model was trained on
+     */
+    public int getTrainingSize() {
+        synchronized (models) {
+            int total = 0;
+            for (TypeModel model : models.values()) {
+                total += model.documents;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The most probable category, or null if nothing was learned for the transaction's type
+     */
+    public String predict(Transaction transaction) {
+        if (transaction.getType() == null) {
+            return null;
+        }
+        Compiled compiled;
+        synchronized (models) {
+            compiled = models.get(transaction.getType()).compiled;
+        }
+        if (compiled == null) {
+            return null;
+        }
+
+        Features features = new Features();
+        features.extract(transaction);
+        int classes = compiled.classes.length;
+        double[] scores = new double[classes];
+        for (int c = 0; c < classes; c++) {
+            scores[c] = compiled.logPrior[c] - features.size * compiled.logDenominator[c];
+        }
+        float[] numerator = compiled.logNumerator;
+        for (int i = 0; i < features.size; i++) {
+            int row = features.buckets[i] * classes;
+            for (int c = 0; c < classes; c++) {
+                scores[c] += numerator[row + c];
+            }
+        }
+
+        int best = 0;
+        for (int c = 1; c < classes; c++) {
+            if (scores[c] > scores[best]) best = c;
+        }
+        return compiled.classes[best];
+    }
+
+    /**
+     * Feature buckets of one transaction
+     */
+    static class Features {
+        int[] buckets = new int[32];
+        int size;
+
+        /**
+         * Hash the note, source and amount of a transaction, replacing earlier contents
+         */
+        void extract(Transaction t) {
+            size = 0;
+            tokenize(t.getNote(), NOTE_SEED);
+            tokenize(t.getSource(), SOURCE_SEED);
+            add(mix(AMOUNT_SEED, CategoryResponseCache.amountBucket(t.getAmount())));
+        }
+
+        /**
+         * Chinese character bigrams (a lone character is its own token) and
+         * lower-cased words of letters and digits; words made only of digits are dropped
+         */
+        void tokenize(String text, int seed) {
+            if (text == null) {
+                return;
+            }
+            int length = text.length();
+            int word = seed;
+            boolean inWord = false;
+            boolean letters = false;
+            char previousHan = 0;
+            int hanRun = 0;
+            for (int i = 0; i <= length; i++) {
+                char c = i < length ? text.charAt(i) : ' ';
+                if (isHan(c)) {
+                    if (inWord && letters) add(word);
+                    inWord = false;
+                    if (hanRun > 0) add(mix(mix(seed, previousHan), c));
+                    previousHan = c;
+                    hanRun++;
+                    continue;
+                }
+                if (hanRun == 1) add(mix(seed, previousHan));
+                hanRun = 0;
+
+                if (Character.isLetterOrDigit(c)) {
+                    if (!inWord) {
+                        word = seed;
+                        inWord = true;
+                        letters = false;
+                    }
+                    word = mix(word, Character.toLowerCase(c));
+                    letters |= !Character.isDigit(c);
+                } else {
+                    if (inWord && letters) add(word);
+                    inWord = false;
+                }
+            }
+        }
+
+        private void add(int hash) {
+            if (size == buckets.length) {
+                buckets = Arrays.copyOf(buckets, size * 2);
+            }
+            buckets[size++] = bucket(hash);
+        }
+    }
+
+    private static boolean isHan(char c) {
+        return (c >= '\u4e00' && c <= '\u9fff') || (c >= '\u3400' && c <= '\u4dbf');
+    }
+
+    // One FNV-1a step
+    private static int mix(int hash, int value) {
+        return (hash ^ value) * 0x01000193;
+    }
+
+    private static int bucket(int hash) {
+        return (hash ^ (hash >>> BUCKET_BITS)) & BUCKET_MASK;
+    }
+
+    /**
+     * Log probabilities used for prediction. The likelihood of a feature in a class
+     * is logNumerator[bucket * classes + class] - logDenominator[class].
+     */
+    private static class Compiled {
+        final String[] classes;
+        final double[] logPrior;
+        final double[] logDenominator;
+        final float[] logNumerator; // log(count + ALPHA); shared with later updates of the same layout
+
+        Compiled(String[] classes, double[] logPrior, double[] logDenominator, float[] logNumerator) {
+            this.classes = classes;
+            this.logPrior = logPrior;
+            this.logDenominator = logDenominator;
+            this.logNumerator = logNumerator;
+        }
+    }
+
+    /**
+     * Training counts for one transaction type
+     */
+    private static class TypeModel {
+        final List<String> classes = new ArrayList<>();
+        final Map<String, Integer> classIndex = new HashMap<>();
+        int[] counts = new int[0];          // [bucket * classes.size() + class]
+        int[] classDocuments = new int[0];
+        long[] classTokens = new long[0];
+        final int[] bucketTotals = new int[BUCKETS];
+        int vocabulary;                     // buckets seen at least once
+        int documents;
+        Compiled compiled;
+
+        void add(String category, Features features) {
+            int c = classIndexOf(category);
+            int stride = classes.size();
+            for (int i = 0; i < features.size; i++) {
+                int bucket = features.buckets[i];
+                counts[bucket * stride + c]++;
+                if (bucketTotals[bucket]++ == 0) vocabulary++;
+            }
+            classTokens[c] += features.size;
+            classDocuments[c]++;
+            documents++;
+        }
+
+        private int classIndexOf(String category) {
+            Integer index = classIndex.get(category);
+            if (index != null) {
+                return index;
+            }
+            // A new class widens every bucket's row
+            int oldStride = classes.size();
+            int newStride = oldStride + 1;
+            int[] widened = new int[BUCKETS * newStride];
+            if (oldStride > 0) {
+                for (int b = 0; b < BUCKETS; b++) {
+                    System.arraycopy(counts, b * oldStride, widened, b * newStride, oldStride);
+                }
+            }
+            counts = widened;
+            classDocuments = Arrays.copyOf(classDocuments, newStride);
+            classTokens = Arrays.copyOf(classTokens, newStride);
+            classes.add(category);
+            classIndex.put(category, oldStride);
+            return oldStride;
+        }
+
+        /**
+         * Build the whole table from the counts
+         */
+        void compile() {
+            int stride = classes.size();
+            if (documents == 0) {
+                compiled = null;
+                return;
+            }
+            float logUnseen = (float) Math.log(ALPHA);
+            float[] logNumerator = new float[BUCKETS * stride];
+            for (int b = 0; b < BUCKETS; b++) {
+                int row = b * stride;
+                if (bucketTotals[b] == 0) {
+                    Arrays.fill(logNumerator, row, row + stride, logUnseen);
+                    continue;
+                }
+                for (int c = 0; c < stride; c++) {
+                    int count = counts[row + c];
+                    logNumerator[row + c] = count == 0 ? logUnseen : (float) Math.log(count + ALPHA);
+                }
+            }
+            compiled = compiledWith(logNumerator);
+        }
+
+        /**
+         * Bring the table up to date after add() of one more row of a known class:
+         * only that class's cells for these features changed, plus the priors and
+         * denominators, which every add() moves
+         */
+        void update(String category, Features features) {
+            int stride = classes.size();
+            int c = classIndex.get(category);
+            float[] logNumerator = compiled.logNumerator;
+            for (int i = 0; i < features.size; i++) {
+                int cell = features.buckets[i] * stride + c;
+                logNumerator[cell] = (float) Math.log(counts[cell] + ALPHA);
+            }
+            compiled = compiledWith(logNumerator);
+        }
+
+        private Compiled compiledWith(float[] logNumerator) {
+            int stride = classes.size();
+            double[] logPrior = new double[stride];
+            double[] logDenominator = new double[stride];
+            for (int c = 0; c < stride; c++) {
+                logPrior[c] = Math.log((double) classDocuments[c] / documents);
+                logDenominator[c] = Math.log(classTokens[c] + ALPHA * Math.max(1, vocabulary));
+            }
+            return new Compiled(classes.toArray(new String[0]), logPrior, logDenominator, logNumerator);
+        }
+    }
+}
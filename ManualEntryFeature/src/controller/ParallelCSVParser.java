@@ -0,0 +1,443 @@
+package controller;
+
+import model.Transaction;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * High-throughput parser for the import CSV layout (type, category, amount, date, note, source).
+ * The file is memory-mapped in chunks that worker threads parse independently;
+ * chunks are delivered in file order. Chunks end at a newline outside quoted fields,
+ * found in one sequential pass over the bytes, so a quoted note with line breaks
+ * stays one record as in CSVImporter.readRecord. Fields are located on the raw
+ * bytes and the type, amount and ISO dates are decoded without regex or temporary
+ * Strings. Rows are parsed exactly like CSVImporter.parseLine: quoted fields, short
+ * rows and anything unusual are handed to it record by record.
+ */
+public class ParallelCSVParser {
+
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int MAX_FIELDS = 6;
+    private static final String DEFAULT_SOURCE = "CSV导入";
+    private static final String PENDING_CATEGORY = "待分类";
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Receives parsed chunks in file order, on the thread that called parse()
+     */
+    public interface ChunkConsumer {
+        /**
+         * @param endOffset file offset just past the chunk, for progress reporting
+         * @return false to stop parsing
+         */
+        boolean accept(List<Transaction> rows, long endOffset) throws Exception;
+    }
+
+    private final int threads;
+
+    public ParallelCSVParser() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelCSVParser(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Parse a whole file into memory
+     */
+    public List<Transaction> parseAll(String filePath) throws IOException {
+        List<Transaction> all = new ArrayList<>();
+        parse(filePath, (rows, endOffset) -> all.addAll(rows));
+        return all;
+    }
+
+    /**
+     * Parse a file, skipping its header line, and hand each chunk's rows to the consumer.
+     * At most two chunks per thread are parsed ahead of the consumer.
+     */
+    public void parse(String filePath, ChunkConsumer consumer) throws IOException {
+        File file = new File(filePath);
+        CSVFileFormat format = CSVFileFormat.detect(filePath);
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "csv-parser");
+            t.setDaemon(true);
+            return t;
+        });
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            ArrayDeque<Future<List<Transaction>>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            for (int chunk = 0; chunk + 1 < bounds.length; chunk++) {
+                while (next + 1 < bounds.length && inFlight.size() < threads * 2) {
+                    long start = bounds[next];
+                    long end = bounds[next + 1];
+                    boolean header = next == 0;
+                    inFlight.add(workers.submit(() -> parseChunk(channel, start, end, header, format)));
+                    next++;
+                }
+                List<Transaction> rows = inFlight.poll().get();
+                if (!consumer.accept(rows, bounds[chunk + 1])) {
+                    return;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("CSV parsing failed: " + cause, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV parsing interrupted", e);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("CSV import stopped: " + e.getMessage(), e);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Chunk start offsets, each just past a record-ending newline, followed by the file size.
+     * Whether a newline is inside quotes depends on every byte before it, so the whole
+     * file is scanned once here; a file without quotes costs just the read.
+     */
+    private static long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        byte[] bytes = buffer.array();
+        RecordScanner scanner = new RecordScanner();
+        long nextCut = CHUNK_BYTES;
+        for (long position = 0; position < size; ) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (scanner.endsRecord(bytes[i])) {
+                    long boundary = position + i + 1;
+                    if (boundary >= nextCut && boundary < size) {
+                        bounds.add(boundary);
+                        nextCut = boundary + CHUNK_BYTES;
+                    }
+                }
+            }
+            position += n;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static List<Transaction> parseChunk(FileChannel channel, long start, long end, boolean skipHeader,
+                                                CSVFileFormat format) throws IOException {
+        List<Transaction> rows = new ArrayList<>();
+        if (end <= start) {
+            return rows;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        LineParser parser = new LineParser(format);
+        int limit = buffer.limit();
+        int lineStart = 0;
+        boolean header = skipHeader;
+        RecordScanner scanner = new RecordScanner();
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && !scanner.endsRecord(buffer.get(lineEnd))) {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (header) {
+                header = false;
+            } else {
+                parser.parse(buffer, lineStart, lineEnd, rows);
+            }
+            lineStart = next;
+        }
+        return rows;
+    }
+
+    /**
+     * Finds record ends with the rules of CSVImporter.readRecord: a newline inside a
+     * quoted field is part of the field, and only a quote at the start of a field opens one
+     */
+    private static final class RecordScanner {
+        private boolean fieldStart = true;
+        private boolean quotedField;
+        private boolean inQuotes;
+
+        /**
+         * @return whether this byte is a newline that ends a record
+         */
+        boolean endsRecord(byte b) {
+            if (b == '"') {
+                if (fieldStart) quotedField = true;
+                if (quotedField) inQuotes = !inQuotes;
+                fieldStart = false;
+            } else if (!inQuotes) {
+                if (b == '\n' || b == ',') {
+                    fieldStart = true;
+                    quotedField = false;
+                    return b == '\n';
+                }
+                if (b != ' ' && b != '\t' && b != '\r') {
+                    fieldStart = false;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Per-thread line parser with reusable buffers
+     */
+    private static class LineParser {
+        private byte[] line = new byte[256];
+        private int length;
+        private final int[] fieldStart = new int[MAX_FIELDS];
+        private final int[] fieldEnd = new int[MAX_FIELDS];
+        // The edit time of every row; LocalDate.now() per row would dominate the parse
+        private final LocalDate today = LocalDate.now();
+        private final CSVFileFormat format;
+
+        LineParser(CSVFileFormat format) {
+            this.format = format;
+        }
+
+        void parse(MappedByteBuffer buffer, int from, int to, List<Transaction> rows) {
+            length = to - from;
+            if (line.length < length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            buffer.get(from, line, 0, length);
+
+            Transaction parsed = null;
+            if (splitFields()) {
+                try {
+                    parsed = parseFields();
+                } catch (RuntimeException ignored) {
+                    // CSVImporter reports the row below
+                }
+            }
+            if (parsed != null) {
+                rows.add(parsed);
+                return;
+            }
+
+            // Same treatment as records read by CSVImporter, which also ends them at a lone CR
+            String text = new String(line, 0, length, StandardCharsets.UTF_8);
+            try (BufferedReader records = new BufferedReader(new StringReader(text))) {
+                String record;
+                while ((record = CSVImporter.readRecord(records)) != null) {
+                    Transaction t = CSVImporter.parseLine(record, format);
+                    if (t != null) {
+                        rows.add(t);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // StringReader does not throw
+            }
+        }
+
+        /**
+         * Split on commas like String.split(","), dropping trailing empty fields
+         * @return false if the line needs the general parser
+         */
+        private boolean splitFields() {
+            int count = 0;
+            int lastNonEmpty = 0;
+            int start = 0;
+            for (int i = 0; i <= length; i++) {
+                byte b = i < length ? line[i] : (byte) ',';
+                if (b == '"' || b == '\r') {
+                    return false;
+                }
+                if (b == ',') {
+                    if (count < MAX_FIELDS) {
+                        fieldStart[count] = start;
+                        fieldEnd[count] = i;
+                    }
+                    count++;
+                    if (i > start) {
+                        lastNonEmpty = count;
+                    }
+                    start = i + 1;
+                }
+            }
+            int fields = Math.min(lastNonEmpty, MAX_FIELDS);
+            if (lastNonEmpty < 4) {
+                return false;
+            }
+            for (int f = fields; f < MAX_FIELDS; f++) {
+                fieldStart[f] = -1;
+            }
+            return true;
+        }
+
+        private Transaction parseFields() {
+            Transaction.Type type = parseType(fieldStart[0], fieldEnd[0]);
+            double amount = parseAmount(fieldStart[2], fieldEnd[2]);
+            LocalDate date = parseDate(fieldStart[3], fieldEnd[3]);
+            String note = fieldStart[4] >= 0 ? text(fieldStart[4], fieldEnd[4]) : "";
+            String source = fieldStart[5] >= 0 ? text(fieldStart[5], fieldEnd[5]) : DEFAULT_SOURCE;
+            return new Transaction(type, PENDING_CATEGORY, amount, date, note, source, today);
+        }
+
+        private Transaction.Type parseType(int start, int end) {
+            int s = trimStart(start, end);
+            int e = trimEnd(s, end);
+            for (int i = s; i < e; i++) {
+                if (line[i] < 0) {
+                    // Non-ASCII text such as 收入 goes through the String rules
+                    return format.parseType(text(start, end));
+                }
+            }
+            if (e - s == 2 && upper(line[s]) == 'I' && upper(line[s + 1]) == 'N') {
+                return Transaction.Type.INCOME;
+            }
+            for (int i = s; i + 6 <= e; i++) {
+                if (upper(line[i]) == 'I' && upper(line[i + 1]) == 'N' && upper(line[i + 2]) == 'C'
+                        && upper(line[i + 3]) == 'O' && upper(line[i + 4]) == 'M' && upper(line[i + 5]) == 'E') {
+                    return Transaction.Type.INCOME;
+                }
+            }
+            return Transaction.Type.EXPENSE;
+        }
+
+        /**
+         * Plain decimals, optionally signed and with $ or ¥ symbols; anything else
+         * (exponents, overlong mantissas) is left to Double.parseDouble
+         */
+        private double parseAmount(int start, int end) {
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = 0;
+            boolean negative = false;
+            boolean signSeen = false;
+            boolean pointSeen = false;
+            boolean trailingSpace = false;
+            boolean simple = true;
+            for (int i = start; i < end && simple; i++) {
+                byte b = line[i];
+                if (b == '$') continue;
+                if (b == (byte) 0xC2 && i + 1 < end && line[i + 1] == (byte) 0xA5) { // ¥
+                    i++;
+                    continue;
+                }
+                if (b >= 0 && b <= ' ') {
+                    trailingSpace = digits > 0 || signSeen || pointSeen;
+                    continue;
+                }
+                if (trailingSpace) {
+                    simple = false;
+                } else if (b >= '0' && b <= '9') {
+                    if (mantissa == 0 && b == '0' && !pointSeen) {
+                        digits = Math.max(digits, 1);
+                        continue;
+                    }
+                    if (digits >= 15 || fractionDigits >= 22) {
+                        simple = false;
+                    } else {
+                        mantissa = mantissa * 10 + (b - '0');
+                        digits++;
+                        if (pointSeen) fractionDigits++;
+                    }
+                } else if (b == '.' && !pointSeen) {
+                    pointSeen = true;
+                } else if ((b == '-' || b == '+') && !signSeen && digits == 0 && !pointSeen) {
+                    signSeen = true;
+                    negative = b == '-';
+                } else {
+                    simple = false;
+                }
+            }
+            if (simple && (digits > 0 || mantissa > 0)) {
+                double value = mantissa / POWERS_OF_TEN[fractionDigits];
+                return negative ? -value : value;
+            }
+            return CSVImporter.parseAmount(text(start, end));
+        }
+
+        /**
+         * The file's detected layout, then yyyy-MM-dd, directly from the bytes;
+         * anything else is probed through CSVFileFormat
+         */
+        private LocalDate parseDate(int start, int end) {
+            int s = trimStart(start, end);
+            int e = trimEnd(s, end);
+            LocalDate detected = format.parseDate(line, s, e);
+            if (detected != null) {
+                return detected;
+            }
+            if (e - s == 10 && line[s + 4] == '-' && line[s + 7] == '-') {
+                int year = digits(s, 4);
+                int month = digits(s + 5, 2);
+                int day = digits(s + 8, 2);
+                if (year >= 0 && month >= 0 && day >= 0) {
+                    try {
+                        return LocalDate.of(year, month, day);
+                    } catch (DateTimeException ignored) {
+                        // Let the lenient formatters decide
+                    }
+                }
+            }
+            return format.parseDate(text(start, end));
+        }
+
+        private int digits(int from, int count) {
+            int value = 0;
+            for (int i = from; i < from + count; i++) {
+                int d = line[i] - '0';
+                if (d < 0 || d > 9) return -1;
+                value = value * 10 + d;
+            }
+            return value;
+        }
+
+        private String text(int start, int end) {
+            int s = trimStart(start, end);
+            int e = trimEnd(s, end);
+            return new String(line, s, e - s, StandardCharsets.UTF_8);
+        }
+
+        // String.trim() removes chars up to ' ', which in UTF-8 are single bytes
+        private int trimStart(int start, int end) {
+            while (start < end && line[start] >= 0 && line[start] <= ' ') start++;
+            return start;
+        }
+
+        private int trimEnd(int start, int end) {
+            while (end > start && line[end - 1] >= 0 && line[end - 1] <= ' ') end--;
+            return end;
+        }
+
+        private static int upper(byte b) {
+            return b >= 'a' && b <= 'z' ? b - 32 : b;
+        }
+    }
+}
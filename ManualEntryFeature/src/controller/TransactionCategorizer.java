@@ -10,6 +10,13 @@ import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.FileInputStream;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 /**
@@ -18,11 +25,43 @@ import java.util.regex.Pattern;
  */
 public class TransactionCategorizer {
 
-    // Map to store user corrections
-    private static final Map<String, String> userCorrectionHistory = new HashMap<>();
+    // Map to store user corrections (read concurrently by bulk categorization)
+    private static final Map<String, String> userCorrectionHistory = new ConcurrentHashMap<>();
 
-    // Flag to determine which classification mode to use
-    private static boolean useSimpleMode = true;  // Default to using simple mode
+    // Corrections arriving in a burst are written to disk together, shortly after the last one
+    private static final long SAVE_DELAY_MILLIS = 2000;
+    private static final ScheduledExecutorService CORRECTION_SAVER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "user-corrections-saver");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private static volatile boolean correctionsDirty;
+
+    /**
+     * Classification modes, in the order toggleMode cycles through them
+     */
+    public enum Mode {
+        SIMPLE("Keyword Matching"),
+        ADVANCED("Advanced Mode"),
+        NAIVE_BAYES("Offline Naive Bayes");
+
+        private final String displayName;
+
+        Mode(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    // Which classification mode to use
+    private static volatile Mode mode = Mode.SIMPLE;  // Default to using simple mode
+
+    // Offline classifier for the Naive Bayes mode, trained from the ledger
+    private static final NaiveBayesCategorizer naiveBayes = new NaiveBayesCategorizer();
 
     // Enhanced Expense category keyword mappings
     private static final Map<String, List<String>> expenseKeywords = new HashMap<>();
@@ -30,6 +69,10 @@ public class TransactionCategorizer {
     // Enhanced Income category keyword mappings
     private static final Map<String, List<String>> incomeKeywords = new HashMap<>();
 
+    // Keyword maps compiled into automata, so matching a note is a single pass
+    private static final KeywordAutomaton expenseAutomaton;
+    private static final KeywordAutomaton incomeAutomaton;
+
     // Smart pattern recognition for Chinese lifestyle
     private static final Map<Pattern, String> smartPatterns = new HashMap<>();
     private static final Map<Pattern, Double> confidenceScores = new HashMap<>();
@@ -46,6 +89,11 @@ public class TransactionCategorizer {
         } catch (Exception e) {
             System.err.println("Could not load user corrections: " + e.getMessage());
         }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (correctionsDirty) {
+                saveUserCorrectionHistory();
+            }
+        }, "user-corrections-flush"));
 
         // Enhanced Expense category keywords - keeping your original + Chinese enhancements
         expenseKeywords.put("Food", Arrays.asList(
@@ -137,6 +185,9 @@ public class TransactionCategorizer {
                 "cash gift", "reimbursement", "reimbursement for meals", "snacks", "okay", "subsidy"
         ));
 
+        expenseAutomaton = new KeywordAutomaton(expenseKeywords);
+        incomeAutomaton = new KeywordAutomaton(incomeKeywords);
+
         // Initialize smart patterns for Chinese lifestyle
         initializeSmartPatterns();
         initializeSeasonalContext();
@@ -258,11 +309,19 @@ public class TransactionCategorizer {
     }
 
     /**
-     * Save user correction history
+     * Save user correction history, replacing the file only once it is fully written
      */
-    public static void saveUserCorrectionHistory() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("user_corrections.dat"))) {
-            oos.writeObject(userCorrectionHistory);
+    public static synchronized void saveUserCorrectionHistory() {
+        correctionsDirty = false;
+        File file = new File("user_corrections.dat");
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(tmp))) {
+                // Written as a plain HashMap so the file format stays the same
+                oos.writeObject(new HashMap<>(userCorrectionHistory));
+            }
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
             System.out.println("Saved " + userCorrectionHistory.size() + " user correction records.");
         } catch (Exception e) {
             System.err.println("Failed to save user correction history: " + e.getMessage());
@@ -270,32 +329,78 @@ public class TransactionCategorizer {
     }
 
     /**
-     * Toggle classification mode
+     * Save the correction history in the background, a short while after the latest change
+     */
+    private static void scheduleCorrectionSave() {
+        correctionsDirty = true;
+        if (saveScheduled.compareAndSet(false, true)) {
+            CORRECTION_SAVER.schedule(() -> {
+                saveScheduled.set(false);
+                saveUserCorrectionHistory();
+            }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Toggle classification mode: simple, advanced, Naive Bayes, then simple again
      */
     public static void toggleMode() {
-        useSimpleMode = !useSimpleMode;
+        Mode[] modes = Mode.values();
+        mode = modes[(mode.ordinal() + 1) % modes.length];
     }
 
     /**
      * Get current classification mode
      */
+    public static Mode getMode() {
+        return mode;
+    }
+
+    public static void setMode(Mode newMode) {
+        mode = newMode;
+    }
+
     public static boolean isUsingAdvancedMode() {
-        return !useSimpleMode;
+        return mode == Mode.ADVANCED;
     }
 
     public static boolean isUsingSimpleMode() {
-        return useSimpleMode;
+        return mode == Mode.SIMPLE;
+    }
+
+    public static boolean isUsingNaiveBayesMode() {
+        return mode == Mode.NAIVE_BAYES;
+    }
+
+    /**
+     * Whether categorize() may call the remote classification API in the current mode
+     */
+    public static boolean usesRemoteClassifier() {
+        return mode == Mode.ADVANCED && AppConfig.isUseAPI();
+    }
+
+    /**
+     * Retrain the offline Naive Bayes classifier from categorized transactions
+     */
+    public static void trainNaiveBayes(List<Transaction> transactions) {
+        naiveBayes.train(transactions);
+        System.out.println("Naive Bayes classifier trained on " + naiveBayes.getTrainingSize() + " transactions.");
+    }
+
+    public static boolean isNaiveBayesTrained() {
+        return naiveBayes.isTrained();
     }
 
     /**
      * Enhanced classify method with smart Chinese context
      */
     public static Transaction categorize(Transaction transaction) {
-        // First, check if it's a Spring Festival red packet
-        if (isSpringFestivalRedPacket(transaction)) {
+        // Spring Festival red packets and user corrections take precedence
+        String presetCategory = presetCategory(transaction);
+        if (presetCategory != null) {
             return new Transaction(
                     transaction.getType(),
-                    "Red Packet",
+                    presetCategory,
                     transaction.getAmount(),
                     transaction.getDate(),
                     transaction.getNote(),
@@ -303,22 +408,22 @@ public class TransactionCategorizer {
             );
         }
 
-        // Then, check the user correction history
-        String key = getDescriptiveKey(transaction);
-        if (userCorrectionHistory.containsKey(key)) {
-            String correctedCategory = userCorrectionHistory.get(key);
+        if (mode == Mode.SIMPLE) {
+            return enhancedCategorizeWithKeywords(transaction);
+        } else if (mode == Mode.NAIVE_BAYES) {
+            String predictedCategory = naiveBayes.predict(transaction);
+            if (predictedCategory == null) {
+                // Nothing learned for this type yet
+                return enhancedCategorizeWithKeywords(transaction);
+            }
             return new Transaction(
                     transaction.getType(),
-                    correctedCategory,
+                    predictedCategory,
                     transaction.getAmount(),
                     transaction.getDate(),
                     transaction.getNote(),
                     transaction.getSource()
             );
-        }
-
-        if (useSimpleMode) {
-            return enhancedCategorizeWithKeywords(transaction);
         } else {
             // Check if API is being used
             if (AppConfig.isUseAPI()) {
@@ -339,6 +444,18 @@ public class TransactionCategorizer {
         }
     }
 
+    /**
+     * The category fixed by rules that run before any classifier:
+     * Spring Festival red packets first, then the user correction history
+     * @return the category, or null if the transaction still needs classifying
+     */
+    static String presetCategory(Transaction transaction) {
+        if (isSpringFestivalRedPacket(transaction)) {
+            return "Red Packet";
+        }
+        return userCorrectionHistory.get(getDescriptiveKey(transaction));
+    }
+
     /**
      * Enhanced categorize with smart pattern recognition and seasonal context
      */
@@ -385,10 +502,10 @@ public class TransactionCategorizer {
         }
 
         // Step 3: Enhanced keyword matching
-        Map<String, List<String>> keywordsMap =
-                (transaction.getType() == Transaction.Type.EXPENSE) ? expenseKeywords : incomeKeywords;
+        KeywordAutomaton automaton =
+                (transaction.getType() == Transaction.Type.EXPENSE) ? expenseAutomaton : incomeAutomaton;
 
-        String category = findBestMatchingCategoryEnhanced(textToMatch, keywordsMap);
+        String category = findBestMatchingCategoryEnhanced(textToMatch, automaton);
 
         return new Transaction(
                 transaction.getType(),
@@ -450,42 +567,10 @@ public class TransactionCategorizer {
 
     /**
      * Enhanced keyword matching with better scoring
+     * (exact match 5, word boundary match 3, partial match 1.5, +0.5 for long keywords)
      */
-    private static String findBestMatchingCategoryEnhanced(String text, Map<String, List<String>> keywordsMap) {
-        Map<String, Double> scores = new HashMap<>();
-
-        for (Map.Entry<String, List<String>> entry : keywordsMap.entrySet()) {
-            String category = entry.getKey();
-            List<String> keywords = entry.getValue();
-
-            double score = 0;
-            for (String keyword : keywords) {
-                String lowerKeyword = keyword.toLowerCase();
-                if (text.contains(lowerKeyword)) {
-                    // Exact match gets highest score
-                    if (text.equals(lowerKeyword)) {
-                        score += 5.0;
-                    }
-                    // Word boundary match gets high score
-                    else if (text.matches(".*\\b" + Pattern.quote(lowerKeyword) + "\\b.*")) {
-                        score += 3.0;
-                    }
-                    // Partial match gets base score
-                    else {
-                        score += 1.5;
-                    }
-
-                    // Bonus for longer, more specific keywords
-                    if (lowerKeyword.length() > 4) {
-                        score += 0.5;
-                    }
-                }
-            }
-
-            if (score > 0) {
-                scores.put(category, score);
-            }
-        }
+    private static String findBestMatchingCategoryEnhanced(String text, KeywordAutomaton automaton) {
+        Map<String, Double> scores = automaton.score(text);
 
         if (scores.isEmpty()) {
             return "Other";
@@ -498,11 +583,14 @@ public class TransactionCategorizer {
      * Record a user correction for a transaction's category
      */
     public static void recordUserCorrection(Transaction originalTransaction, String newCategory) {
+        if (newCategory == null) {
+            return;
+        }
         String key = getDescriptiveKey(originalTransaction);
         userCorrectionHistory.put(key, newCategory);
 
-        // If using advanced mode, also train the ML model
-        if (!useSimpleMode && originalTransaction != null) {
+        // If using a learning mode, also train its model
+        if (mode != Mode.SIMPLE && originalTransaction != null) {
             Transaction correctedTransaction = new Transaction(
                     originalTransaction.getType(),
                     newCategory,
@@ -512,10 +600,14 @@ public class TransactionCategorizer {
                     originalTransaction.getSource()
             );
 
-            MLTransactionCategorizer.learnFromTransaction(correctedTransaction);
+            if (mode == Mode.NAIVE_BAYES) {
+                naiveBayes.learn(correctedTransaction);
+            } else {
+                MLTransactionCategorizer.learnFromTransaction(correctedTransaction);
+            }
         }
 
-        saveUserCorrectionHistory();
+        scheduleCorrectionSave();
     }
 
     /**
@@ -533,15 +625,9 @@ public class TransactionCategorizer {
     }
 
     /**
-     * Classify multiple transactions in bulk
+     * Classify multiple transactions in bulk, in parallel, keeping the input order
      */
     public static List<Transaction> categorizeAll(List<Transaction> transactions) {
-        List<Transaction> categorizedTransactions = new ArrayList<>();
-
-        for (Transaction transaction : transactions) {
-            categorizedTransactions.add(categorize(transaction));
-        }
-
-        return categorizedTransactions;
+        return new ArrayList<>(new BulkCategorizer().categorizeAll(transactions, null));
     }
 }
@@ -2,129 +2,371 @@ package controller;
 
 import model.Transaction;
 import model.User; // New import
-import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
 
 import java.io.*;
-import java.lang.reflect.Type;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Owns one user's ledger. Every change goes through the synchronized mutators, so
+ * there is a single writer at a time, normally the event dispatch thread. The live
+ * views (getAllTransactions, getStore, getDateIndex, getRollup) are for that thread;
+ * other threads read a snapshot(), an immutable copy that edits never change.
+ */
 public class TransactionController {
-    private final List<Transaction> transactions = new ArrayList<>();
+    // Columnar storage; getAllTransactions exposes it as a list of Transaction views
+    private TransactionStore store = new TransactionStore();
+    private TransactionDateIndex dateIndex = new TransactionDateIndex(store);
+    private int savedModCount;
 
     private String DATA_FILE = "transactions.json"; // default value for backward compatibility
     private User currentUser; // Store the logged-in user
 
+    // Append-only log of mutations on top of the DATA_FILE snapshot
+    private TransactionJournal journal;
+    private long nextId = 1;
+
+    // Month/category totals kept up to date through the change listener callbacks
+    private final TransactionRollup rollup = new TransactionRollup();
+
+    // Content index used to recognise rows that are already in the ledger on import
+    private final DuplicateIndex duplicateIndex = new DuplicateIndex();
+
+    // Whether category edits teach the classifiers, which every ledger in the process shares
+    private volatile boolean learnsCorrections = true;
+
+    // Latest snapshot handed out, and the store state it was copied from
+    private LedgerSnapshot snapshot;
+    private TransactionStore snapshotSource;
+    private int snapshotModCount;
+    private long snapshotVersion;
+
     // Overloaded constructor with user
     public TransactionController(User user) {
         this.currentUser = user;
         this.DATA_FILE = "PersonalFinanceTracker/transactions_" + user.getUsername() + ".json";
+        this.journal = new TransactionJournal(DATA_FILE, AppConfig.isBinaryStorage());
+        addChangeListener(rollup);
+        addChangeListener(duplicateIndex);
     }
 
     // Default constructor kept for compatibility (not used in login-based version)
-    public TransactionController() {}
-
-    // A custom TypeAdapter is used to handle LocalDate
-    private static class LocalDateAdapter implements JsonSerializer<LocalDate>, JsonDeserializer<LocalDate> {
-        private final DateTimeFormatter formatter = DateTimeFormatter.ISO_DATE;
-
-        @Override
-        public JsonElement serialize(LocalDate src, Type typeOfSrc, JsonSerializationContext context) {
-            return new JsonPrimitive(src.format(formatter));
-        }
-
-        @Override
-        public LocalDate deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-            try {
-                if (json.isJsonObject()) {
-                    JsonObject dateObj = json.getAsJsonObject();
-                    int year = dateObj.get("year").getAsInt();
-                    int month = dateObj.get("month").getAsInt();
-                    int day = dateObj.get("day").getAsInt();
-                    return LocalDate.of(year, month, day);
-                } else {
-                    return LocalDate.parse(json.getAsString(), formatter);
-                }
-            } catch (Exception e) {
-                System.err.println("Failed to parse date: " + json + ", using current date.");
-                return LocalDate.now();
-            }
-        }
+    public TransactionController() {
+        this.journal = new TransactionJournal(DATA_FILE, AppConfig.isBinaryStorage());
+        addChangeListener(rollup);
+        addChangeListener(duplicateIndex);
     }
 
-    public void addTransaction(Transaction t) {
+    public synchronized void addTransaction(Transaction t) {
         t.setEditTime(LocalDate.now());
-        transactions.add(t);
-        transactions.sort((o1,o2) -> o2.getDate().compareTo(o1.getDate()));
-        saveTransactions(); // Auto-save
+        t.setId(nextId++);
+        int row = insertSorted(t);
+        journal.appendAdd(t); // Auto-save
+        compactIfNeeded();
+        fireAdded(Collections.singletonList(t));
+        if (row >= 0) {
+            fireRowsInserted(row, row);
+        } else {
+            fireRowsReset();
+        }
     }
 
-    public void importTransactions(List<Transaction> importedTransactions) {
+    /**
+     * Put a new row where it keeps the ledger newest first, found by binary search.
+     * Imports merge their rows into date order too, so the rows are only out of
+     * order if something else left them so; then they are sorted again.
+     * @return the new row, or -1 if the sort moved every row
+     */
+    private int insertSorted(Transaction t) {
+        if (!store.isSortedByDateDescending()) {
+            store.add(t);
+            store.sortByDateDescending();
+            return -1;
+        }
+        int row = store.insertionPoint(t.getDate());
+        store.insert(row, t);
+        return row;
+    }
+
+    public synchronized void importTransactions(List<Transaction> importedTransactions) {
         for (Transaction t : importedTransactions) {
             t.setEditTime(LocalDate.now());//set edit time
+            t.setId(nextId++);
+        }
+        int firstRow = store.size();
+        // Merged into date order, so later single adds stay a binary search and one insert
+        boolean appended = store.addAllSorted(importedTransactions);
+        journal.appendAddAll(importedTransactions); // Auto-save
+        compactIfNeeded();
+        fireAdded(importedTransactions);
+        if (appended) {
+            fireRowsInserted(firstRow, store.size() - 1);
+        } else {
+            fireRowsReset();
         }
-        transactions.addAll(importedTransactions);
-        saveTransactions(); // Auto-save
     }
 
-    public List<Transaction> getAllTransactions() {
-        return transactions;
+    /**
+     * Import one batch of a file, treating rows already in the ledger as the
+     * report's policy says. Pass the same report for every batch of the file.
+     */
+    public synchronized void importTransactions(List<Transaction> batch, ImportReport report) {
+        report.beginBatch(nextId);
+        DuplicateIndex.Policy policy = report.getPolicy();
+        List<Transaction> accepted = new ArrayList<>(batch.size());
+        Map<Long, String> merges = new HashMap<>();
+        for (Transaction t : batch) {
+            long existingId = policy == DuplicateIndex.Policy.KEEP ? -1 : report.matchExisting(duplicateIndex, t);
+            if (existingId < 0) {
+                accepted.add(t);
+            } else if (policy == DuplicateIndex.Policy.FLAG) {
+                accepted.add(t);
+                report.recordFlagged(t);
+            } else if (policy == DuplicateIndex.Policy.MERGE) {
+                merges.put(existingId, t.getCategory());
+                report.recordMerged(t);
+            } else {
+                report.recordSkipped(t);
+            }
+        }
+        if (!accepted.isEmpty()) {
+            importTransactions(accepted);
+        }
+        report.recordImported(accepted.size());
+        if (!merges.isEmpty()) {
+            mergeCategories(merges);
+        }
     }
 
-    public void saveTransactions() {
-        try {
-            Gson gson = new GsonBuilder()
-                    .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-                    .setPrettyPrinting()
-                    .create();
-            String json = gson.toJson(transactions);
-            try (FileWriter writer = new FileWriter(DATA_FILE)) {
-                writer.write(json);
+    /**
+     * Give existing rows the category of their imported duplicate where they have
+     * none of their own (empty, pending or Other); rows are found by id
+     */
+    private void mergeCategories(Map<Long, String> categories) {
+        for (Map.Entry<Long, String> merge : categories.entrySet()) {
+            int i = store.rowOf(merge.getKey());
+            String category = merge.getValue();
+            if (i < 0 || !isUnassigned(store.getCategory(i)) || isUnassigned(category)) {
+                continue;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            Transaction before = store.get(i);
+            Transaction after = new Transaction(before.getType(), category, before.getAmount(),
+                    before.getDate(), before.getNote(), before.getSource());
+            after.setEditTime(LocalDate.now());
+            after.setId(before.getId());
+            store.set(i, after);
+            journal.appendUpdate(after);
+            fireUpdated(before, after);
+            fireRowsUpdated(i, i);
+        }
+        compactIfNeeded();
+    }
+
+    private static boolean isUnassigned(String category) {
+        return category == null || category.trim().isEmpty() || "待分类".equals(category) || "Other".equals(category);
+    }
+
+    /**
+     * Read-only view of all transactions; Transaction objects are built per access.
+     * It follows later edits, so read it on the writing thread only.
+     */
+    public List<Transaction> getAllTransactions() {
+        return store.asList();
+    }
+
+    /**
+     * The columnar rows behind getAllTransactions, for views that read single
+     * fields. It is replaced on load, so do not keep it; change rows only
+     * through the controller.
+     */
+    public TransactionStore getStore() {
+        return store;
+    }
+
+    /**
+     * The ledger as it is now, for reading on any thread while edits go on.
+     * Snapshots are copied only after the ledger changed, so repeated calls
+     * between edits return the same one.
+     */
+    public synchronized LedgerSnapshot snapshot() {
+        if (snapshot == null || snapshotSource != store || snapshotModCount != store.getModCount()) {
+            snapshot = new LedgerSnapshot(++snapshotVersion, store.copy());
+            snapshotSource = store;
+            snapshotModCount = store.getModCount();
+        }
+        return snapshot;
+    }
+
+    /**
+     * A copy of the current rows that another thread can read while this
+     * controller keeps changing, e.g. for a background export
+     */
+    public synchronized TransactionStore snapshotStore() {
+        return store.copy();
+    }
+
+    /**
+     * Stream the ledger to a CSV file, limited by the exporter's filters.
+     * It reads a snapshot, so it can run on any thread without holding up edits.
+     * @return number of rows written
+     */
+    public long exportToCSV(CSVExporter exporter, File file) throws IOException {
+        return exporter.export(snapshot().store(), file, null);
+    }
+
+    /**
+     * Number of distinct days on which transactions were recorded or edited
+     */
+    public int getRecordedDayCount() {
+        return store.countDistinctEditDays();
+    }
+
+    /**
+     * Whether any transaction was recorded or edited on the given day
+     */
+    public boolean hasRecordedOn(LocalDate day) {
+        return store.hasEditDay((int) day.toEpochDay());
+    }
+
+    /**
+     * Date index for month and period queries; its views read the live store
+     */
+    public TransactionDateIndex getDateIndex() {
+        return dateIndex;
+    }
+
+    /**
+     * Pre-aggregated monthly, per-category and per-day totals, kept current with every edit
+     */
+    public TransactionRollup getRollup() {
+        return rollup;
+    }
+
+    /**
+     * Months that have at least one transaction, oldest first
+     */
+    public SortedSet<YearMonth> getAvailableMonths() {
+        return dateIndex.months();
+    }
+
+    /**
+     * Categories used by at least one transaction
+     */
+    public SortedSet<String> getUsedCategories() {
+        return store.distinctCategories();
+    }
+
+    /**
+     * Write a full snapshot of all transactions and clear the journal
+     */
+    public synchronized void saveTransactions() {
+        if (store.getModCount() == savedModCount && !journal.hasPendingRecords()) {
+            return; // Nothing changed since the last load or save
+        }
+        journal.compactNow(store.copy().asList());
+        savedModCount = store.getModCount();
+    }
+
+    /**
+     * Fold the journal into the snapshot in the background once it grows large
+     */
+    private void compactIfNeeded() {
+        if (journal.needsCompaction()) {
+            journal.compactAsync(store.copy().asList());
         }
     }
 
     // Add and automatically categorize transactions
     public void addAndCategorizeTransaction(Transaction transaction) {
-        // Use classifiers to automatically classify
-        Transaction categorizedTransaction = TransactionCategorizer.categorize(transaction);
+        // Use classifiers to automatically classify; a remote model may be slow, so not under the lock
+        appendCategorized(TransactionCategorizer.categorize(transaction));
+    }
+
+    private synchronized void appendCategorized(Transaction categorizedTransaction) {
         categorizedTransaction.setEditTime(LocalDate.now());
-        transactions.add(categorizedTransaction);
-        saveTransactions();
+        categorizedTransaction.setId(nextId++);
+        int row = insertSorted(categorizedTransaction);
+        journal.appendAdd(categorizedTransaction);
+        compactIfNeeded();
+        fireAdded(Collections.singletonList(categorizedTransaction));
+        if (row >= 0) {
+            fireRowsInserted(row, row);
+        } else {
+            fireRowsReset();
+        }
         notifyListeners();
     }
 
     // Delete Transaction
-    public void deleteTransaction(int index) {
-        if (index >= 0 && index < transactions.size()) {
-            transactions.remove(index);
-            saveTransactions();
+    public synchronized void deleteTransaction(int index) {
+        if (index >= 0 && index < store.size()) {
+            Transaction removed = store.get(index);
+            store.remove(index);
+            journal.appendDelete(removed.getId());
+            compactIfNeeded();
+            for (TransactionChangeListener listener : listeners) {
+                listener.onTransactionRemoved(removed);
+            }
+            fireRowsDeleted(index, index);
             notifyListeners();
         }
     }
 
     // Update Transaction
-    public void updateTransaction(int index, Transaction newTransaction) {
-        if (index >= 0 && index < transactions.size()) {
+    public synchronized void updateTransaction(int index, Transaction newTransaction) {
+        if (index >= 0 && index < store.size()) {
+            Transaction oldTransaction = store.get(index);
             newTransaction.setEditTime(LocalDate.now());
-            transactions.set(index, newTransaction);
-            saveTransactions();
+            newTransaction.setId(oldTransaction.getId());
+            if (!Objects.equals(oldTransaction.getDate(), newTransaction.getDate())
+                    && store.isSortedByDateDescending()) {
+                // A new date moves the row to where it keeps the ledger sorted
+                store.remove(index);
+                int row = store.insertionPoint(newTransaction.getDate());
+                store.insert(row, newTransaction);
+                journal.appendUpdate(newTransaction);
+                compactIfNeeded();
+                fireUpdated(oldTransaction, newTransaction);
+                fireRowsDeleted(index, index);
+                fireRowsInserted(row, row);
+            } else {
+                store.set(index, newTransaction);
+                journal.appendUpdate(newTransaction);
+                compactIfNeeded();
+                fireUpdated(oldTransaction, newTransaction);
+                fireRowsUpdated(index, index);
+            }
             notifyListeners();
         }
     }
 
+    /**
+     * Whether updateCategory records the change as a correction for the classifiers.
+     * Their history and models are process-wide, so this is for the desktop app's one
+     * user; a server turns it off so its users do not train each other's categories.
+     */
+    public void setLearnsCorrections(boolean learnsCorrections) {
+        this.learnsCorrections = learnsCorrections;
+    }
+
     // Update the transaction category
-    public void updateCategory(int index, String newCategory) {
-        if (index >= 0 && index < transactions.size()) {
-            Transaction oldTransaction = transactions.get(index);
+    public synchronized void updateCategory(int index, String newCategory) {
+        if (index >= 0 && index < store.size()) {
+            Transaction oldTransaction = store.get(index);
 
             // Record the user's remediation for machine learning
-            TransactionCategorizer.recordUserCorrection(oldTransaction, newCategory);
+            if (learnsCorrections) {
+                TransactionCategorizer.recordUserCorrection(oldTransaction, newCategory);
+            }
 
             // Create a new transaction with updated category
             Transaction updatedTransaction = new Transaction(
@@ -137,26 +379,137 @@ public class TransactionController {
             );
 
             updatedTransaction.setEditTime(LocalDate.now());
-            transactions.set(index, updatedTransaction);
-            saveTransactions();
+            updatedTransaction.setId(oldTransaction.getId());
+            store.set(index, updatedTransaction);
+            journal.appendUpdate(updatedTransaction);
+            compactIfNeeded();
+            fireUpdated(oldTransaction, updatedTransaction);
+            fireRowsUpdated(index, index);
             notifyListeners();
         }
     }
 
+    /**
+     * The transaction with this id, or null if there is none
+     */
+    public synchronized Transaction getTransactionById(long id) {
+        int row = store.rowOf(id);
+        return row < 0 ? null : store.get(row);
+    }
+
+    /**
+     * Replace the transaction with this id, wherever its row is by now
+     * @return false if there is no such transaction
+     */
+    public synchronized boolean updateTransactionById(long id, Transaction newTransaction) {
+        int row = store.rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+        updateTransaction(row, newTransaction);
+        return true;
+    }
+
+    /**
+     * Set the category of the transaction with this id, wherever its row is by now
+     * @return false if there is no such transaction
+     */
+    public synchronized boolean updateCategoryById(long id, String newCategory) {
+        int row = store.rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+        updateCategory(row, newCategory);
+        return true;
+    }
+
+    /**
+     * Delete the transaction with this id, wherever its row is by now
+     * @return false if there is no such transaction
+     */
+    public synchronized boolean deleteTransactionById(long id) {
+        int row = store.rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+        deleteTransaction(row);
+        return true;
+    }
+
     // Reclassify all transactions
     public void recategorizeAll() {
-        List<Transaction> recategorized = TransactionCategorizer.categorizeAll(new ArrayList<>(transactions));
-        for (Transaction t : recategorized) {
+        recategorizeAll(new BulkCategorizer(), null);
+    }
+
+    /**
+     * Reclassify all transactions in parallel, reporting progress as rows complete.
+     * Nothing is changed if the categorizer is cancelled before it finishes, and
+     * edits can go on while it runs.
+     * @return false if the run was cancelled
+     */
+    public boolean recategorizeAll(BulkCategorizer categorizer, BulkCategorizer.ProgressListener progress) {
+        List<Transaction> snapshot = new ArrayList<>(snapshot().getTransactions());
+        List<Transaction> recategorized;
+        try {
+            recategorized = categorizer.categorizeAll(snapshot, progress);
+        } catch (CancellationException e) {
+            return false;
+        }
+        applyCategories(snapshot, recategorized);
+        return true;
+    }
+
+    /**
+     * Write back the result of categorizing the rows of a snapshot(), which may have
+     * run on another thread. Rows deleted or edited since the snapshot was taken are
+     * left as they are now. The changed rows are journaled, so this does not wait for
+     * a full snapshot to be written; a large batch is compacted in the background.
+     * @param snapshot the rows that were categorized
+     * @param categorized the categorizer's output for them, in the same order
+     * @return number of rows written
+     */
+    public synchronized int applyCategories(List<Transaction> snapshot, List<Transaction> categorized) {
+        List<Transaction> updated = new ArrayList<>();
+        for (int k = 0; k < snapshot.size(); k++) {
+            Transaction before = snapshot.get(k);
+            int row = k;
+            if (row >= store.size() || store.getId(row) != before.getId()) {
+                // Rows moved since the snapshot
+                row = store.rowOf(before.getId());
+                if (row < 0) continue;
+            }
+            if (!sameContent(store.get(row), before)) {
+                continue;
+            }
+            Transaction t = categorized.get(k);
             t.setEditTime(LocalDate.now());
+            t.setId(before.getId());
+            store.set(row, t);
+            updated.add(t);
         }
-        transactions.clear();
-        transactions.addAll(recategorized);
-        saveTransactions();
+        journal.appendUpdateAll(updated);
+        compactIfNeeded();
+        fireReloaded();
+        fireRowsUpdated(0, store.size() - 1);
         notifyListeners();
+        return updated.size();
     }
 
-    // Add listener-related code
-    private List<TransactionChangeListener> listeners = new ArrayList<>();
+    private static boolean sameContent(Transaction a, Transaction b) {
+        return new DuplicateIndex.Key(a).equals(new DuplicateIndex.Key(b))
+                && Objects.equals(a.getCategory(), b.getCategory());
+    }
+
+    /**
+     * Train the offline Naive Bayes classifier on this ledger's categorized transactions
+     */
+    public void trainOfflineClassifier() {
+        TransactionCategorizer.trainNaiveBayes(snapshot().getTransactions());
+    }
+
+    // Add listener-related code; copy-on-write, so firing never races a registration
+    private final List<TransactionChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<RowListener> rowListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Add a transaction change listener
@@ -165,6 +518,13 @@ public class TransactionController {
         listeners.add(listener);
     }
 
+    /**
+     * Add a listener for row positions in getAllTransactions
+     */
+    public void addRowListener(RowListener listener) {
+        rowListeners.add(listener);
+    }
+
     /**
      * Notify all listeners that the transaction has changed
      */
@@ -174,50 +534,177 @@ public class TransactionController {
         }
     }
 
+    private void fireAdded(List<Transaction> added) {
+        for (TransactionChangeListener listener : listeners) {
+            listener.onTransactionsAdded(added);
+        }
+    }
+
+    private void fireUpdated(Transaction before, Transaction after) {
+        for (TransactionChangeListener listener : listeners) {
+            listener.onTransactionUpdated(before, after);
+        }
+    }
+
+    private void fireReloaded() {
+        List<Transaction> all = store.asList();
+        for (TransactionChangeListener listener : listeners) {
+            listener.onTransactionsReloaded(all);
+        }
+    }
+
+    private void fireRowsInserted(int firstRow, int lastRow) {
+        if (lastRow < firstRow) return;
+        for (RowListener listener : rowListeners) {
+            listener.rowsInserted(firstRow, lastRow);
+        }
+    }
+
+    private void fireRowsUpdated(int firstRow, int lastRow) {
+        if (lastRow < firstRow) return;
+        for (RowListener listener : rowListeners) {
+            listener.rowsUpdated(firstRow, lastRow);
+        }
+    }
+
+    private void fireRowsDeleted(int firstRow, int lastRow) {
+        for (RowListener listener : rowListeners) {
+            listener.rowsDeleted(firstRow, lastRow);
+        }
+    }
+
+    private void fireRowsReset() {
+        for (RowListener listener : rowListeners) {
+            listener.rowsReset();
+        }
+    }
+
     /**
-     * Import a CSV file
+     * Row of the transaction with this id in getAllTransactions, or -1
      */
-    public void importFromCSV(String filePath) {
-        // Use CSVImporter to import data and automatically classify it
-        CSVImporter importer = new CSVImporter();
-        List<Transaction> importedTransactions = importer.importTransactions(filePath);
-
-        // Automatically classify imported transactions
-        List<Transaction> categorizedTransactions = TransactionCategorizer.categorizeAll(importedTransactions);
+    public synchronized int indexOf(long id) {
+        return store.rowOf(id);
+    }
 
-        for (Transaction t : categorizedTransactions) {
-            t.setEditTime(LocalDate.now());
+    /**
+     * Import a CSV file, handling rows already in the ledger as configured
+     * @return what was imported and which duplicates were found
+     */
+    public ImportReport importFromCSV(String filePath) {
+        ImportReport report = new ImportReport(AppConfig.getDuplicatePolicy());
+        try {
+            importFromCSV(new CSVImportPipeline(filePath), report, null);
+        } catch (IOException e) {
+            System.err.println("CSV import failed: " + e.getMessage());
         }
+        return report;
+    }
 
-        // Add to the list of existing transactions
-        transactions.addAll(categorizedTransactions);
-        saveTransactions();
-        notifyListeners();
+    /**
+     * Stream a CSV file through the import pipeline, categorizing it and appending
+     * one batch at a time; rows imported before a failure or cancellation are kept.
+     * Runs on the calling thread; each batch is appended as one edit.
+     * @param report receives the counts and duplicates, and decides what happens to them
+     * @param progress optional progress listener, may be null
+     * @return the report
+     */
+    public ImportReport importFromCSV(CSVImportPipeline pipeline, ImportReport report,
+                                      CSVImportPipeline.ProgressListener progress) throws IOException {
+        try {
+            pipeline.run(batch -> importTransactions(batch, report), progress);
+            return report;
+        } finally {
+            notifyListeners();
+        }
     }
 
     /**
-     * Transaction change listener interface
+     * Transaction change listener interface.
+     * The fine-grained callbacks fire on every mutation, including the plain
+     * add and import paths that do not trigger onTransactionsChanged.
      */
     public interface TransactionChangeListener {
         void onTransactionsChanged();
-    }
 
-    public void loadTransactions() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
-            return;
+        default void onTransactionsAdded(List<Transaction> added) {
+        }
+
+        default void onTransactionRemoved(Transaction removed) {
+        }
+
+        default void onTransactionUpdated(Transaction before, Transaction after) {
+        }
+
+        /**
+         * All rows were replaced, e.g. after loading or recategorizing
+         */
+        default void onTransactionsReloaded(List<Transaction> all) {
         }
+    }
+
+    /**
+     * Row-level changes to getAllTransactions, by list position, for views that
+     * mirror the list one row at a time such as the transaction table.
+     * Positions refer to the list after the change.
+     */
+    public interface RowListener {
+        void rowsInserted(int firstRow, int lastRow);
+
+        void rowsUpdated(int firstRow, int lastRow);
 
-        try (FileReader reader = new FileReader(DATA_FILE)) {
-            Gson gson = new GsonBuilder()
-                    .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-                    .create();
-            Type listType = new TypeToken<ArrayList<Transaction>>() {}.getType();
-            transactions.clear();
-            transactions.addAll(gson.fromJson(reader, listType));
-            transactions.sort((o1,o2) -> {
-                return o2.getDate().compareTo(o1.getDate());
-            });
+        /**
+         * Positions refer to the list before the rows were removed
+         */
+        void rowsDeleted(int firstRow, int lastRow);
+
+        /**
+         * Rows were reordered or replaced wholesale
+         */
+        void rowsReset();
+    }
+
+    public synchronized void loadTransactions() {
+        try {
+            List<Transaction> loaded = journal.load();
+            if (loaded == null) {
+                return;
+            }
+
+            boolean assignedIds = false;
+            if (loaded instanceof LedgerFile.LedgerTransactionList
+                    && ((LedgerFile.LedgerTransactionList) loaded).backingLedger() != null) {
+                // Copy the ledger columns straight into the store without building Transactions
+                LedgerFile ledger = ((LedgerFile.LedgerTransactionList) loaded).backingLedger();
+                store = TransactionStore.fromLedger(ledger);
+                nextId = Math.max(nextId, ledger.maxId() + 1);
+                // Everything is copied; drop the file's bytes
+                ledger.close();
+            } else {
+                // Files written before ids existed get them assigned once, in file order
+                for (Transaction t : loaded) {
+                    nextId = Math.max(nextId, t.getId() + 1);
+                }
+                for (Transaction t : loaded) {
+                    if (t.getId() == 0) {
+                        t.setId(nextId++);
+                        assignedIds = true;
+                    }
+                }
+
+                store = new TransactionStore();
+                store.addAll(loaded);
+            }
+            store.sortByDateDescending();
+            dateIndex = new TransactionDateIndex(store);
+            savedModCount = store.getModCount();
+            fireReloaded();
+            fireRowsReset();
+
+            // Rewrite once in the configured format after migrating ids or switching formats
+            if (assignedIds || journal.loadedFromOtherFormat()) {
+                savedModCount = -1;
+                saveTransactions();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
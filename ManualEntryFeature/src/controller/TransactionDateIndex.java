@@ -0,0 +1,214 @@
+package controller;
+
+import model.Transaction;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Date index over the rows of a TransactionStore.
+ * Finds a month or date range by binary search and returns it as a view over that
+ * slice, newest first. The controller keeps its store sorted newest first, and then
+ * the index searches the store's date column directly: after an edit it only
+ * re-finds where each month starts, one binary search per month, instead of
+ * copying or sorting the rows. Only an unsorted store, e.g. a freshly loaded file,
+ * is copied into a sorted row order, which takes a sort on the first query after
+ * each change while the store stays unsorted.
+ */
+public class TransactionDateIndex {
+
+    private final TransactionStore store;
+
+    private int builtModCount = -1;
+    // Store rows, newest date first, stable by row; null when the store itself is in that order
+    private int[] order;
+    private int[] days;                    // epoch day of order[i], null with order
+    private int datedCount;                // rows with a date; undated rows sort last
+    private int[] monthKeys = new int[0];  // year * 12 + month - 1, newest first
+    private int[] monthStart = new int[1]; // offset of each month in order, plus an end marker
+
+    TransactionDateIndex(TransactionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Transactions dated from..to inclusive, newest first
+     */
+    public synchronized List<Transaction> between(LocalDate from, LocalDate to) {
+        refresh();
+        int start = firstAtOrBefore((int) to.toEpochDay());
+        int end = firstAtOrBefore((int) from.toEpochDay() - 1);
+        return new RangeView(start, Math.max(start, end));
+    }
+
+    /**
+     * Transactions dated within the given month, newest first
+     */
+    public synchronized List<Transaction> inMonth(YearMonth month) {
+        refresh();
+        int bucket = findMonth(monthKey(month));
+        if (bucket < 0) {
+            return Collections.emptyList();
+        }
+        return new RangeView(monthStart[bucket], monthStart[bucket + 1]);
+    }
+
+    /**
+     * Months that have at least one transaction, oldest first
+     */
+    public synchronized SortedSet<YearMonth> months() {
+        refresh();
+        SortedSet<YearMonth> result = new TreeSet<>();
+        for (int key : monthKeys) {
+            result.add(YearMonth.of(key / 12, key % 12 + 1));
+        }
+        return result;
+    }
+
+    /**
+     * The most recent month with a transaction, or null if there are none
+     */
+    public synchronized YearMonth latestMonth() {
+        refresh();
+        return monthKeys.length == 0 ? null : YearMonth.of(monthKeys[0] / 12, monthKeys[0] % 12 + 1);
+    }
+
+    private void refresh() {
+        if (builtModCount == store.getModCount()) {
+            return;
+        }
+        if (store.isSortedByDateDescending()) {
+            order = null;
+            days = null;
+            // Undated rows sort last
+            datedCount = firstAtOrBefore(TransactionStore.NO_DATE, store.size());
+        } else {
+            sortRows();
+        }
+        findMonths();
+        builtModCount = store.getModCount();
+    }
+
+    private void sortRows() {
+        int n = store.size();
+        // Same packed (date, row) key trick as TransactionStore.sortByDateDescending
+        long[] keys = new long[n];
+        for (int row = 0; row < n; row++) {
+            keys[row] = (((long) Integer.MAX_VALUE - store.getEpochDay(row)) << 31) | row;
+        }
+        Arrays.sort(keys);
+        int[] newOrder = new int[n];
+        int[] newDays = new int[n];
+        int dated = 0;
+        for (int i = 0; i < n; i++) {
+            newOrder[i] = (int) (keys[i] & Integer.MAX_VALUE);
+            newDays[i] = store.getEpochDay(newOrder[i]);
+            if (newDays[i] != TransactionStore.NO_DATE) {
+                dated++;
+            }
+        }
+        order = newOrder;
+        days = newDays;
+        datedCount = dated;
+    }
+
+    // Month starts, found by one binary search per month for the first day of the month before
+    private void findMonths() {
+        int[] keysByMonth = new int[16];
+        int[] starts = new int[17];
+        int months = 0;
+        for (int i = 0; i < datedCount; ) {
+            LocalDate date = LocalDate.ofEpochDay(day(i));
+            if (months == keysByMonth.length) {
+                keysByMonth = Arrays.copyOf(keysByMonth, months * 2);
+                starts = Arrays.copyOf(starts, months * 2 + 1);
+            }
+            keysByMonth[months] = monthKey(date);
+            starts[months] = i;
+            months++;
+            i = firstAtOrBefore((int) date.withDayOfMonth(1).toEpochDay() - 1, datedCount);
+        }
+        starts[months] = datedCount;
+        monthKeys = Arrays.copyOf(keysByMonth, months);
+        monthStart = Arrays.copyOf(starts, months + 1);
+    }
+
+    private int day(int offset) {
+        return days == null ? store.getEpochDay(offset) : days[offset];
+    }
+
+    /**
+     * First offset whose day is on or before the given day, in the newest-first order
+     */
+    private int firstAtOrBefore(int epochDay) {
+        return firstAtOrBefore(epochDay, datedCount);
+    }
+
+    private int firstAtOrBefore(int epochDay, int end) {
+        int lo = 0, hi = end;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (day(mid) > epochDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int findMonth(int key) {
+        int lo = 0, hi = monthKeys.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (monthKeys[mid] > key) {
+                lo = mid + 1;
+            } else if (monthKeys[mid] < key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static int monthKey(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    private static int monthKey(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    /**
+     * A slice of the index, valid until the store is next modified
+     */
+    private class RangeView extends AbstractList<Transaction> implements RandomAccess {
+        private final int[] rows = order;
+        private final int start;
+        private final int end;
+        private final int expectedModCount = builtModCount;
+
+        RangeView(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Transaction get(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + (end - start));
+            }
+            if (store.getModCount() != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return store.get(rows == null ? start + index : rows[start + index]);
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+}
@@ -0,0 +1,559 @@
+package controller;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Transaction;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-ahead journal for a per-user transaction file.
+ * Every mutation is appended as one compact JSON line keyed by the transaction id,
+ * and the snapshot (pretty-printed JSON or a binary LedgerFile) is only rewritten
+ * during compaction.
+ */
+class TransactionJournal {
+
+    // Number of journal records after which a background compaction is scheduled
+    private static final int COMPACT_THRESHOLD = 5000;
+
+    // Snapshot writes run one at a time, in submission order, on a daemon thread
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "transaction-journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final TransactionTypeAdapter ADAPTER = TransactionTypeAdapter.INSTANCE;
+
+    private final File jsonFile;
+    private final File ledgerFile;
+    private final File journalFile;
+    private final File compactingFile;
+    private final boolean binary;
+
+    private Writer journalWriter;
+    // The file stream under journalWriter, closed directly to drop a half-written record unflushed
+    private FileOutputStream journalStream;
+    // Journal length up to the last record that was flushed whole
+    private long journalLength;
+    // Set when a half-written record could not be cut off the journal; nothing is appended then
+    private boolean tornJournal;
+    // Set when a record could not be written, so only a full snapshot holds that change
+    private volatile boolean lostRecords;
+    private int pendingRecords;
+    private boolean loadedFromOtherFormat;
+    // Set when the last load failed; the files are then left as they are on disk
+    private boolean unreadable;
+    private final AtomicBoolean compactionInFlight = new AtomicBoolean(false);
+
+    /**
+     * @param snapshotPath path of the JSON snapshot; the ledger and journal files sit next to it
+     * @param binary whether snapshots are written in the binary ledger format instead of JSON
+     */
+    TransactionJournal(String snapshotPath, boolean binary) {
+        String base = snapshotPath.endsWith(".json")
+                ? snapshotPath.substring(0, snapshotPath.length() - 5)
+                : snapshotPath;
+        this.jsonFile = new File(snapshotPath);
+        this.ledgerFile = new File(base + ".ledger");
+        this.journalFile = new File(base + ".journal");
+        this.compactingFile = new File(base + ".journal.compacting");
+        this.binary = binary;
+    }
+
+    /**
+     * Load the snapshot and replay any journal records on top of it.
+     * Replay is idempotent, so a journal that was already folded into the
+     * snapshot before a crash can safely be applied again.
+     * Whichever snapshot format was written last is read; with an empty journal
+     * a binary ledger is returned as a lazily decoded view of the file's rows.
+     * A torn last record from a crash is cut off the journal before anything is
+     * appended after it; an unreadable record anywhere else fails the load.
+     * @return the transactions in snapshot order, or null if nothing is stored yet
+     */
+    List<Transaction> load() throws IOException {
+        try {
+            List<Transaction> loaded = loadFiles();
+            unreadable = false;
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            unreadable = true;
+            throw e;
+        }
+    }
+
+    private List<Transaction> loadFiles() throws IOException {
+        File snapshotFile = newestSnapshot();
+        if (snapshotFile == null && !journalFile.exists() && !compactingFile.exists()) {
+            return null;
+        }
+        loadedFromOtherFormat = snapshotFile != null && !snapshotFile.equals(binary ? ledgerFile : jsonFile);
+
+        List<Transaction> snapshot = new ArrayList<>();
+        LedgerFile ledger = null;
+        if (snapshotFile != null) {
+            if (snapshotFile.equals(ledgerFile)) {
+                ledger = LedgerFile.open(ledgerFile);
+                snapshot = ledger.asList();
+            } else {
+                snapshot = readJsonSnapshot(snapshotFile);
+            }
+        }
+
+        pendingRecords = 0;
+        if (!journalFile.exists() && !compactingFile.exists()) {
+            // The caller copies the rows and then closes the ledger
+            return snapshot;
+        }
+
+        LinkedHashMap<Long, Transaction> byId = new LinkedHashMap<>();
+        List<Transaction> withoutId = new ArrayList<>();
+        for (Transaction t : snapshot) {
+            if (t.getId() == 0) {
+                withoutId.add(t);
+            } else {
+                byId.put(t.getId(), t);
+            }
+        }
+        if (ledger != null) {
+            // Every row is decoded now; drop the file's bytes
+            ledger.close();
+        }
+
+        pendingRecords = replay(compactingFile, byId) + replay(journalFile, byId);
+
+        List<Transaction> result = new ArrayList<>(withoutId);
+        result.addAll(byId.values());
+        return result;
+    }
+
+    /**
+     * Whether the last load read the snapshot format that is not currently configured
+     */
+    boolean loadedFromOtherFormat() {
+        return loadedFromOtherFormat;
+    }
+
+    // Normally only one snapshot exists, since writing one deletes the other format's
+    private File newestSnapshot() {
+        if (jsonFile.exists() && ledgerFile.exists()) {
+            return ledgerFile.lastModified() >= jsonFile.lastModified() ? ledgerFile : jsonFile;
+        }
+        if (ledgerFile.exists()) return ledgerFile;
+        if (jsonFile.exists()) return jsonFile;
+        return null;
+    }
+
+    /**
+     * Read a pretty-printed JSON transaction array
+     */
+    static List<Transaction> readJsonSnapshot(File file) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16))) {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Transaction t = ADAPTER.read(reader);
+                    if (t != null) {
+                        transactions.add(t);
+                    }
+                }
+                reader.endArray();
+            }
+        } catch (EOFException e) {
+            // Empty snapshot file
+        }
+        return transactions;
+    }
+
+    private int replay(File file, Map<Long, Transaction> byId) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        int applied = 0;
+        long position = 0;
+        long goodEnd = 0; // Byte offset just past the last readable record
+        boolean terminated = true;
+        String torn = null;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            int b;
+            do {
+                b = in.read();
+                if (b >= 0 && b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                position += line.size() + (b >= 0 ? 1 : 0);
+                String text = line.toString(StandardCharsets.UTF_8);
+                line.reset();
+                if (text.trim().isEmpty()) {
+                    if (torn == null) goodEnd = position;
+                    continue;
+                }
+                if (torn != null) {
+                    throw new IOException("Unreadable journal record before the end of " + file + ": " + torn);
+                }
+                try {
+                    applyRecord(text, byId);
+                    applied++;
+                    goodEnd = position;
+                    terminated = b >= 0;
+                } catch (IOException | IllegalStateException | NumberFormatException e) {
+                    torn = e.getMessage();
+                }
+            } while (b >= 0);
+        }
+
+        if (torn != null || !terminated) {
+            // A torn last line after a crash; everything before it is intact. Cut it off
+            // so the next record does not run into it and get lost with it.
+            if (torn != null) {
+                System.err.println("Dropping torn journal record at the end of " + file + ": " + torn);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(goodEnd);
+                if (!terminated) {
+                    raf.seek(goodEnd);
+                    raf.write('\n');
+                }
+            }
+        }
+        return applied;
+    }
+
+    private static void applyRecord(String line, Map<Long, Transaction> byId) throws IOException {
+        try (JsonReader record = new JsonReader(new StringReader(line))) {
+            String op = null;
+            long id = 0;
+            Transaction t = null;
+            record.beginObject();
+            while (record.hasNext()) {
+                switch (record.nextName()) {
+                    case "op": op = record.nextString(); break;
+                    case "id": id = record.nextLong(); break;
+                    case "tx": t = ADAPTER.read(record); break;
+                    default: record.skipValue();
+                }
+            }
+            record.endObject();
+
+            if ("DELETE".equals(op)) {
+                byId.remove(id);
+            } else if (t != null) {
+                // ADD and UPDATE are both upserts keyed by id
+                byId.put(t.getId(), t);
+            } else {
+                throw new IOException("record without transaction");
+            }
+        }
+    }
+
+    void appendAdd(Transaction t) {
+        append("ADD", t);
+        flush();
+    }
+
+    void appendAddAll(Collection<Transaction> transactions) {
+        appendAll("ADD", transactions);
+    }
+
+    void appendUpdate(Transaction t) {
+        append("UPDATE", t);
+        flush();
+    }
+
+    void appendUpdateAll(Collection<Transaction> transactions) {
+        appendAll("UPDATE", transactions);
+    }
+
+    private void appendAll(String op, Collection<Transaction> transactions) {
+        for (Transaction t : transactions) {
+            if (!append(op, t)) {
+                return; // The rest of the batch goes into the next snapshot
+            }
+        }
+        flush();
+    }
+
+    void appendDelete(long id) {
+        try {
+            JsonWriter record = openRecord("DELETE");
+            record.name("id").value(id);
+            closeRecord(record);
+        } catch (IOException e) {
+            writeFailed(e);
+            return;
+        }
+        flush();
+    }
+
+    private boolean append(String op, Transaction t) {
+        try {
+            JsonWriter record = openRecord(op);
+            record.name("tx");
+            ADAPTER.write(record, t);
+            closeRecord(record);
+            return true;
+        } catch (IOException e) {
+            writeFailed(e);
+            return false;
+        }
+    }
+
+    private JsonWriter openRecord(String op) throws IOException {
+        if (unreadable) {
+            throw new IOException("Not writing to " + journalFile + ", which could not be read");
+        }
+        if (tornJournal && !truncateJournal()) {
+            throw new IOException("Not appending to " + journalFile + " after a half-written record");
+        }
+        if (journalWriter == null) {
+            File parent = journalFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            journalLength = journalFile.length();
+            journalStream = new FileOutputStream(journalFile, true);
+            journalWriter = new BufferedWriter(new OutputStreamWriter(journalStream, StandardCharsets.UTF_8));
+        }
+        // The writer is shared, so the per-record JsonWriter must neither flush nor close it
+        JsonWriter record = new JsonWriter(new FilterWriter(journalWriter) {
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        record.beginObject();
+        record.name("op").value(op);
+        return record;
+    }
+
+    private void closeRecord(JsonWriter record) throws IOException {
+        record.endObject();
+        journalWriter.write('\n');
+        pendingRecords++;
+    }
+
+    private void flush() {
+        try {
+            if (journalWriter != null) {
+                journalWriter.flush();
+                journalLength = journalStream.getChannel().size();
+            }
+        } catch (IOException e) {
+            writeFailed(e);
+        }
+    }
+
+    /**
+     * A record could not be written. Drop the writer with whatever part of a record it
+     * still buffers and cut the journal back to its last whole record, so the next
+     * append does not land behind a torn line that would make the journal unreadable.
+     * The lost change is still in memory; needsCompaction now asks for a snapshot.
+     */
+    private void writeFailed(IOException e) {
+        System.err.println("Failed to write to " + journalFile + ": " + e.getMessage());
+        lostRecords = true;
+        if (journalWriter == null) {
+            return; // Nothing was written
+        }
+        try {
+            journalStream.close();
+        } catch (IOException closeFailure) {
+            // Already failing; the truncation below decides what is kept
+        }
+        journalWriter = null;
+        journalStream = null;
+        truncateJournal();
+    }
+
+    private boolean truncateJournal() {
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+            if (raf.length() > journalLength) {
+                raf.setLength(journalLength);
+            }
+            tornJournal = false;
+        } catch (IOException e) {
+            System.err.println("Could not cut the half-written record off " + journalFile + ": " + e.getMessage());
+            tornJournal = true;
+        }
+        return !tornJournal;
+    }
+
+    /**
+     * Whether any journal records exist that are not yet folded into the snapshot
+     */
+    boolean hasPendingRecords() {
+        return pendingRecords > 0 || lostRecords || journalFile.exists() || compactingFile.exists();
+    }
+
+    /**
+     * Whether enough records have piled up to make a compaction worthwhile,
+     * or a change could not be journaled and only a snapshot can keep it
+     */
+    boolean needsCompaction() {
+        return (pendingRecords >= COMPACT_THRESHOLD || lostRecords) && !compactionInFlight.get();
+    }
+
+    /**
+     * Fold the journal back into the snapshot on the background thread.
+     * The caller passes a copy of the current list, which already contains every
+     * journaled change; the journal is rotated so new records keep appending meanwhile.
+     */
+    void compactAsync(List<Transaction> snapshot) {
+        if (unreadable || !compactionInFlight.compareAndSet(false, true)) {
+            return;
+        }
+        if (!rotateJournal()) {
+            compactionInFlight.set(false);
+            return;
+        }
+        // The snapshot holds every change made so far, including any that could not be journaled
+        lostRecords = false;
+        COMPACTOR.submit(() -> {
+            try {
+                writeSnapshot(snapshot);
+                Files.deleteIfExists(compactingFile.toPath());
+            } catch (IOException e) {
+                System.err.println("Background compaction failed: " + e.getMessage());
+                lostRecords = true;
+            } finally {
+                compactionInFlight.set(false);
+            }
+        });
+    }
+
+    /**
+     * Write a full snapshot and discard the journal, waiting for the write to finish
+     */
+    void compactNow(List<Transaction> snapshot) {
+        if (unreadable) {
+            System.err.println("Not replacing " + journalFile + " and its snapshot, which could not be read");
+            return;
+        }
+        closeWriter();
+        Future<Boolean> done = COMPACTOR.submit(() -> {
+            try {
+                writeSnapshot(snapshot);
+                Files.deleteIfExists(compactingFile.toPath());
+                Files.deleteIfExists(journalFile.toPath());
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+        });
+        try {
+            if (done.get()) {
+                lostRecords = false;
+                tornJournal = false;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        pendingRecords = 0;
+    }
+
+    private boolean rotateJournal() {
+        closeWriter();
+        if (tornJournal && !truncateJournal()) {
+            pendingRecords = 0;
+            return false;
+        }
+        try {
+            if (compactingFile.exists()) {
+                // A previous compaction did not finish. The snapshot about to be written holds
+                // its records too, so retry it with this journal's records added; replay is
+                // idempotent, so a crash between the append and the delete is harmless.
+                if (journalFile.exists()) {
+                    try (OutputStream out = new FileOutputStream(compactingFile, true)) {
+                        Files.copy(journalFile.toPath(), out);
+                    }
+                    Files.delete(journalFile.toPath());
+                }
+            } else if (journalFile.exists() && !journalFile.renameTo(compactingFile)) {
+                throw new IOException("rename failed");
+            }
+        } catch (IOException e) {
+            System.err.println("Could not rotate journal " + journalFile + ": " + e.getMessage());
+            // Try again after another threshold's worth of records, not on every change
+            pendingRecords = 0;
+            return false;
+        }
+        pendingRecords = 0;
+        return true;
+    }
+
+    private void writeSnapshot(List<Transaction> snapshot) throws IOException {
+        if (binary) {
+            // An untouched ledger view already is the ledger on disk
+            if (snapshot instanceof LedgerFile.LedgerTransactionList) {
+                LedgerFile backing = ((LedgerFile.LedgerTransactionList) snapshot).backingLedger();
+                if (backing != null && backing.getFile().equals(ledgerFile)) {
+                    return;
+                }
+            }
+            LedgerFile.write(ledgerFile, snapshot);
+        } else {
+            writeJsonSnapshot(jsonFile, snapshot);
+        }
+        // The other format's snapshot is now stale; left in place, the next load
+        // would have to guess between the two from their modification times
+        File stale = binary ? jsonFile : ledgerFile;
+        try {
+            Files.deleteIfExists(stale.toPath());
+        } catch (IOException e) {
+            System.err.println("Could not delete old snapshot " + stale + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write transactions as a pretty-printed JSON array, replacing the file atomically
+     */
+    static void writeJsonSnapshot(File file, List<Transaction> snapshot) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(tmp), StandardCharsets.UTF_8), 1 << 16))) {
+            writer.setIndent("  ");
+            writer.beginArray();
+            for (Transaction t : snapshot) {
+                ADAPTER.write(writer, t);
+            }
+            writer.endArray();
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void closeWriter() {
+        if (journalWriter != null) {
+            try {
+                journalWriter.close();
+                journalWriter = null;
+                journalStream = null;
+            } catch (IOException e) {
+                writeFailed(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package controller;
+
+import model.Transaction;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Pre-aggregated month x type x category and day x type totals.
+ * Registered as a TransactionChangeListener on the controller and updated
+ * incrementally for every add, update and delete, so charts and reports read
+ * totals without touching individual transactions.
+ */
+public class TransactionRollup implements TransactionController.TransactionChangeListener {
+
+    private static final int TYPES = Transaction.Type.values().length;
+
+    // Sums and counts for one (month, type, category) or (month, type) cell, split by day of month
+    private static class Cell {
+        double sum;
+        int count;
+        final double[] daySums = new double[31];
+        final int[] dayCounts = new int[31];
+
+        void apply(int dayOfMonth, double amount, int sign) {
+            count += sign;
+            dayCounts[dayOfMonth - 1] += sign;
+            if (count == 0) {
+                sum = 0; // Drop rounding residue once the cell is empty again
+            } else {
+                sum += sign * amount;
+            }
+            if (dayCounts[dayOfMonth - 1] == 0) {
+                daySums[dayOfMonth - 1] = 0;
+            } else {
+                daySums[dayOfMonth - 1] += sign * amount;
+            }
+        }
+    }
+
+    private static class MonthRollup {
+        final Cell[] byType = new Cell[TYPES];
+        final List<Map<String, Cell>> byTypeAndCategory = new ArrayList<>(TYPES);
+
+        MonthRollup() {
+            for (int i = 0; i < TYPES; i++) {
+                byType[i] = new Cell();
+                byTypeAndCategory.add(new HashMap<>());
+            }
+        }
+    }
+
+    private final Map<YearMonth, MonthRollup> months = new HashMap<>();
+
+    @Override
+    public void onTransactionsChanged() {
+        // Totals are kept current by the fine-grained callbacks
+    }
+
+    @Override
+    public synchronized void onTransactionsAdded(List<Transaction> added) {
+        for (Transaction t : added) {
+            apply(t, 1);
+        }
+    }
+
+    @Override
+    public synchronized void onTransactionRemoved(Transaction removed) {
+        apply(removed, -1);
+    }
+
+    @Override
+    public synchronized void onTransactionUpdated(Transaction before, Transaction after) {
+        apply(before, -1);
+        apply(after, 1);
+    }
+
+    @Override
+    public synchronized void onTransactionsReloaded(List<Transaction> all) {
+        months.clear();
+        for (Transaction t : all) {
+            apply(t, 1);
+        }
+    }
+
+    private void apply(Transaction t, int sign) {
+        if (t.getType() == null || t.getDate() == null) {
+            return;
+        }
+        LocalDate date = t.getDate();
+        YearMonth month = YearMonth.from(date);
+        MonthRollup rollup = months.get(month);
+        if (rollup == null) {
+            if (sign < 0) {
+                return;
+            }
+            rollup = new MonthRollup();
+            months.put(month, rollup);
+        }
+
+        int type = t.getType().ordinal();
+        rollup.byType[type].apply(date.getDayOfMonth(), t.getAmount(), sign);
+
+        Map<String, Cell> categories = rollup.byTypeAndCategory.get(type);
+        Cell cell = categories.get(t.getCategory());
+        if (cell == null) {
+            if (sign < 0) {
+                return;
+            }
+            cell = new Cell();
+            categories.put(t.getCategory(), cell);
+        }
+        cell.apply(date.getDayOfMonth(), t.getAmount(), sign);
+        if (cell.count == 0) {
+            categories.remove(t.getCategory());
+        }
+    }
+
+    /**
+     * Total amount of one type in a month
+     */
+    public synchronized double getTotal(YearMonth month, Transaction.Type type) {
+        MonthRollup rollup = months.get(month);
+        return rollup == null ? 0 : rollup.byType[type.ordinal()].sum;
+    }
+
+    /**
+     * Number of transactions of one type in a month, optionally limited to one category
+     * @param category the category, or null for all categories
+     */
+    public synchronized int getCount(YearMonth month, Transaction.Type type, String category) {
+        Cell cell = cell(month, type, category);
+        return cell == null ? 0 : cell.count;
+    }
+
+    /**
+     * Per-category totals of one type in a month
+     */
+    public synchronized Map<String, Double> getCategoryTotals(YearMonth month, Transaction.Type type) {
+        Map<String, Double> totals = new HashMap<>();
+        MonthRollup rollup = months.get(month);
+        if (rollup != null) {
+            for (Map.Entry<String, Cell> entry : rollup.byTypeAndCategory.get(type.ordinal()).entrySet()) {
+                totals.put(entry.getKey(), entry.getValue().sum);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Per-day totals of one type in a month, for days that have transactions
+     * @param category the category, or null for all categories
+     */
+    public synchronized SortedMap<LocalDate, Double> getDailyTotals(YearMonth month, Transaction.Type type, String category) {
+        SortedMap<LocalDate, Double> totals = new TreeMap<>();
+        Cell cell = cell(month, type, category);
+        if (cell != null) {
+            for (int day = 0; day < 31; day++) {
+                if (cell.dayCounts[day] > 0) {
+                    totals.put(month.atDay(day + 1), cell.daySums[day]);
+                }
+            }
+        }
+        return totals;
+    }
+
+    private Cell cell(YearMonth month, Transaction.Type type, String category) {
+        MonthRollup rollup = months.get(month);
+        if (rollup == null) {
+            return null;
+        }
+        return category == null
+                ? rollup.byType[type.ordinal()]
+                : rollup.byTypeAndCategory.get(type.ordinal()).get(category);
+    }
+}
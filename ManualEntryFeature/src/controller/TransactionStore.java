@@ -0,0 +1,622 @@
+package controller;
+
+import model.Transaction;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Columnar in-memory storage for transactions.
+ * Each field lives in its own primitive array and categories and sources are
+ * dictionary-encoded, so a row costs a few dozen bytes instead of a Transaction
+ * object with two LocalDates and three Strings. Transaction objects are only
+ * created when a row is read through get() or asList().
+ *
+ * Rows are found by transaction id through an open-addressing id -> row table.
+ * Appends, inserts, removals and in-place updates patch it in place; a sort moves
+ * every row, so the table is rebuilt on the next lookup after one.
+ */
+public class TransactionStore {
+
+    // Epoch day stored for a missing date
+    public static final int NO_DATE = Integer.MIN_VALUE;
+    // values() clones the array on every call, and getType is on every sort and repaint
+    private static final Transaction.Type[] TYPES = Transaction.Type.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] dates = new int[INITIAL_CAPACITY];
+    private int[] editDates = new int[INITIAL_CAPACITY];
+    private double[] amounts = new double[INITIAL_CAPACITY];
+    private int[] categories = new int[INITIAL_CAPACITY];
+    private int[] sources = new int[INITIAL_CAPACITY];
+    private String[] notes = new String[INITIAL_CAPACITY];
+    private int size;
+    private int modCount;
+
+    // Whether the rows are known to be newest first; false means "check"
+    private boolean knownSorted = true;
+
+    // Id -> row table: keys and rows in parallel slots, rows + 1 so 0 marks an empty slot
+    private long[] indexIds = new long[0];
+    private int[] indexRows = new int[0];
+    private boolean indexValid;
+    // Whether two rows share an id; the table then holds the last of them, which patching can't track
+    private boolean indexHasDuplicates;
+
+    // Shared dictionary for category and source strings; ids are never reused
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIds = new HashMap<>();
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Incremented on every change, so callers can tell whether the rows moved on
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    // ---- Column accessors ----
+
+    public long getId(int row) {
+        checkIndex(row);
+        return ids[row];
+    }
+
+    public Transaction.Type getType(int row) {
+        checkIndex(row);
+        return types[row] < 0 ? null : TYPES[types[row]];
+    }
+
+    public int getEpochDay(int row) {
+        checkIndex(row);
+        return dates[row];
+    }
+
+    public int getEditEpochDay(int row) {
+        checkIndex(row);
+        return editDates[row];
+    }
+
+    public double getAmount(int row) {
+        checkIndex(row);
+        return amounts[row];
+    }
+
+    public String getCategory(int row) {
+        checkIndex(row);
+        return lookup(categories[row]);
+    }
+
+    public int getCategoryId(int row) {
+        checkIndex(row);
+        return categories[row];
+    }
+
+    public String getSource(int row) {
+        checkIndex(row);
+        return lookup(sources[row]);
+    }
+
+    public String getNote(int row) {
+        checkIndex(row);
+        return notes[row];
+    }
+
+    /**
+     * Resolve a dictionary id returned by getCategoryId
+     */
+    public String lookup(int dictionaryId) {
+        return dictionaryId < 0 ? null : dictionary.get(dictionaryId);
+    }
+
+    /**
+     * Build a Transaction for one row
+     */
+    public Transaction get(int row) {
+        checkIndex(row);
+        Transaction t = new Transaction(getType(row), lookup(categories[row]), amounts[row],
+                toDate(dates[row]), notes[row], lookup(sources[row]), toDate(editDates[row]));
+        t.setId(ids[row]);
+        return t;
+    }
+
+    /**
+     * A read-only list view that builds Transaction objects on demand
+     */
+    public List<Transaction> asList() {
+        return new TransactionView();
+    }
+
+    private class TransactionView extends AbstractList<Transaction> implements RandomAccess {
+        @Override
+        public Transaction get(int index) {
+            return TransactionStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    // ---- Mutations ----
+
+    public void add(Transaction t) {
+        ensureCapacity(size + 1);
+        write(size, t);
+        size++;
+        appended(size - 1);
+        modCount++;
+    }
+
+    public void addAll(Collection<Transaction> transactions) {
+        ensureCapacity(size + transactions.size());
+        for (Transaction t : transactions) {
+            write(size++, t);
+            appended(size - 1);
+        }
+        modCount++;
+    }
+
+    /**
+     * Add rows where they keep the store newest first, as insert at insertionPoint
+     * would for each, but in one pass: the batch is sorted on its own and merged in
+     * from the end. New rows go after existing rows of the same day, in batch order.
+     * An unsorted store is sorted first.
+     * @return whether the existing rows kept their positions, i.e. every new row went after them
+     */
+    public boolean addAllSorted(List<Transaction> transactions) {
+        boolean wasSorted = isSortedByDateDescending();
+        sortByDateDescending();
+        int k = transactions.size();
+        if (k == 0) {
+            return wasSorted;
+        }
+        // Same packed (date, position) keys as sortByDateDescending, so ties keep batch order
+        long[] keys = new long[k];
+        for (int j = 0; j < k; j++) {
+            keys[j] = (((long) Integer.MAX_VALUE - toEpochDay(transactions.get(j).getDate())) << 31) | j;
+        }
+        Arrays.sort(keys);
+
+        int oldSize = size;
+        ensureCapacity(size + k);
+        int existing = size - 1;
+        int target = size + k - 1;
+        for (int j = k - 1; j >= 0; j--) {
+            Transaction t = transactions.get((int) (keys[j] & Integer.MAX_VALUE));
+            int day = toEpochDay(t.getDate());
+            while (existing >= 0 && dates[existing] < day) {
+                moveRow(existing--, target--);
+            }
+            write(target--, t);
+        }
+        size += k;
+        boolean appendedOnly = wasSorted && existing == oldSize - 1;
+        if (appendedOnly) {
+            for (int row = oldSize; row < size; row++) {
+                appended(row);
+            }
+        } else {
+            indexValid = false;
+        }
+        knownSorted = true;
+        modCount++;
+        return appendedOnly;
+    }
+
+    public void insert(int row, Transaction t) {
+        if (row < 0 || row > size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        ensureCapacity(size + 1);
+        int tail = size - row;
+        System.arraycopy(ids, row, ids, row + 1, tail);
+        System.arraycopy(types, row, types, row + 1, tail);
+        System.arraycopy(dates, row, dates, row + 1, tail);
+        System.arraycopy(editDates, row, editDates, row + 1, tail);
+        System.arraycopy(amounts, row, amounts, row + 1, tail);
+        System.arraycopy(categories, row, categories, row + 1, tail);
+        System.arraycopy(sources, row, sources, row + 1, tail);
+        System.arraycopy(notes, row, notes, row + 1, tail);
+        write(row, t);
+        size++;
+        knownSorted = knownSorted && inOrder(row);
+        if (indexValid) {
+            if (indexHasDuplicates || (size << 1) > indexIds.length) {
+                indexValid = false;
+            } else {
+                shiftIndexedRows(row, 1);
+                put(ids[row], row);
+                // A duplicate id may belong to a later row, which a rebuild would prefer
+                indexValid = !indexHasDuplicates;
+            }
+        }
+        modCount++;
+    }
+
+    public void set(int row, Transaction t) {
+        checkIndex(row);
+        long oldId = ids[row];
+        write(row, t);
+        knownSorted = knownSorted && inOrder(row);
+        if (ids[row] != oldId) {
+            indexValid = false;
+        }
+        modCount++;
+    }
+
+    public void remove(int row) {
+        checkIndex(row);
+        if (indexValid) {
+            if (indexHasDuplicates) {
+                indexValid = false;
+            } else {
+                delete(ids[row]);
+                shiftIndexedRows(row + 1, -1);
+            }
+        }
+        int tail = size - row - 1;
+        System.arraycopy(ids, row + 1, ids, row, tail);
+        System.arraycopy(types, row + 1, types, row, tail);
+        System.arraycopy(dates, row + 1, dates, row, tail);
+        System.arraycopy(editDates, row + 1, editDates, row, tail);
+        System.arraycopy(amounts, row + 1, amounts, row, tail);
+        System.arraycopy(categories, row + 1, categories, row, tail);
+        System.arraycopy(sources, row + 1, sources, row, tail);
+        System.arraycopy(notes, row + 1, notes, row, tail);
+        size--;
+        notes[size] = null;
+        modCount++;
+    }
+
+    public void clear() {
+        Arrays.fill(notes, 0, size, null);
+        size = 0;
+        knownSorted = true;
+        indexValid = false;
+        modCount++;
+    }
+
+    /**
+     * Stable sort of all rows, newest date first.
+     * Sorts packed (date, row) keys as primitives and then permutes every column once.
+     */
+    public void sortByDateDescending() {
+        if (isSortedByDateDescending()) {
+            return;
+        }
+
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = (((long) Integer.MAX_VALUE - dates[i]) << 31) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = (int) (keys[i] & Integer.MAX_VALUE);
+        }
+
+        long[] newIds = new long[ids.length];
+        byte[] newTypes = new byte[types.length];
+        int[] newDates = new int[dates.length];
+        int[] newEditDates = new int[editDates.length];
+        double[] newAmounts = new double[amounts.length];
+        int[] newCategories = new int[categories.length];
+        int[] newSources = new int[sources.length];
+        String[] newNotes = new String[notes.length];
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            newIds[i] = ids[from];
+            newTypes[i] = types[from];
+            newDates[i] = dates[from];
+            newEditDates[i] = editDates[from];
+            newAmounts[i] = amounts[from];
+            newCategories[i] = categories[from];
+            newSources[i] = sources[from];
+            newNotes[i] = notes[from];
+        }
+        ids = newIds;
+        types = newTypes;
+        dates = newDates;
+        editDates = newEditDates;
+        amounts = newAmounts;
+        categories = newCategories;
+        sources = newSources;
+        notes = newNotes;
+        knownSorted = true;
+        indexValid = false;
+        modCount++;
+    }
+
+    /**
+     * Row at which a transaction on this date keeps the rows newest first: after
+     * every row of the same day, like the stable sort. Binary search, so the rows
+     * must already be sorted.
+     */
+    public int insertionPoint(LocalDate date) {
+        int epochDay = toEpochDay(date);
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dates[mid] >= epochDay) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Row holding the transaction with this id, or -1.
+     * Rebuilds the id table first if rows moved since the last lookup, so unlike the
+     * other reads it changes the store and must not race other lookups.
+     */
+    public int rowOf(long id) {
+        if (!indexValid) {
+            rebuildIndex();
+        }
+        int mask = indexIds.length - 1;
+        for (int slot = slot(id, mask); indexRows[slot] != 0; slot = (slot + 1) & mask) {
+            if (indexIds[slot] == id) {
+                return indexRows[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    // ---- Scans ----
+
+    public boolean isSortedByDateDescending() {
+        if (knownSorted) {
+            return true;
+        }
+        for (int i = 1; i < size; i++) {
+            if (dates[i - 1] < dates[i]) return false;
+        }
+        knownSorted = true;
+        return true;
+    }
+
+    /**
+     * Number of distinct edit days, counted on the edit-date column with a bitmap
+     */
+    public int countDistinctEditDays() {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (editDates[i] == NO_DATE) continue;
+            min = Math.min(min, editDates[i]);
+            max = Math.max(max, editDates[i]);
+        }
+        if (min > max) {
+            return 0;
+        }
+        BitSet seen = new BitSet(max - min + 1);
+        for (int i = 0; i < size; i++) {
+            if (editDates[i] != NO_DATE) {
+                seen.set(editDates[i] - min);
+            }
+        }
+        return seen.cardinality();
+    }
+
+    public boolean hasEditDay(int epochDay) {
+        for (int i = 0; i < size; i++) {
+            if (editDates[i] == epochDay) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Distinct categories used by at least one row, in natural order
+     */
+    public SortedSet<String> distinctCategories() {
+        boolean[] used = new boolean[dictionary.size()];
+        for (int i = 0; i < size; i++) {
+            if (categories[i] >= 0) {
+                used[categories[i]] = true;
+            }
+        }
+        SortedSet<String> result = new TreeSet<>();
+        for (int id = 0; id < used.length; id++) {
+            if (used[id]) {
+                result.add(dictionary.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * An independent copy of the current rows, sharing only immutable strings
+     */
+    public TransactionStore copy() {
+        TransactionStore copy = new TransactionStore();
+        copy.ids = Arrays.copyOf(ids, Math.max(size, 1));
+        copy.types = Arrays.copyOf(types, Math.max(size, 1));
+        copy.dates = Arrays.copyOf(dates, Math.max(size, 1));
+        copy.editDates = Arrays.copyOf(editDates, Math.max(size, 1));
+        copy.amounts = Arrays.copyOf(amounts, Math.max(size, 1));
+        copy.categories = Arrays.copyOf(categories, Math.max(size, 1));
+        copy.sources = Arrays.copyOf(sources, Math.max(size, 1));
+        copy.notes = Arrays.copyOf(notes, Math.max(size, 1));
+        copy.size = size;
+        copy.knownSorted = knownSorted;
+        copy.dictionary.addAll(dictionary);
+        copy.dictionaryIds.putAll(dictionaryIds);
+        return copy;
+    }
+
+    /**
+     * Fill the store straight from the columns of a ledger file
+     */
+    public static TransactionStore fromLedger(LedgerFile ledger) {
+        TransactionStore store = new TransactionStore();
+        int n = ledger.size();
+        store.ensureCapacity(n);
+        for (int row = 0; row < n; row++) {
+            Transaction.Type type = ledger.getType(row);
+            store.ids[row] = ledger.getId(row);
+            store.types[row] = type == null ? -1 : (byte) type.ordinal();
+            store.dates[row] = ledger.getEpochDay(row);
+            store.editDates[row] = ledger.getEditEpochDay(row);
+            store.amounts[row] = ledger.getAmount(row);
+            store.categories[row] = store.encode(ledger.getCategory(row));
+            store.sources[row] = store.encode(ledger.getSource(row));
+            store.notes[row] = ledger.getNote(row);
+        }
+        store.size = n;
+        store.knownSorted = false;
+        return store;
+    }
+
+    // ---- Internals ----
+
+    // Whether a row is in date order with its neighbours
+    private boolean inOrder(int row) {
+        return (row == 0 || dates[row - 1] >= dates[row]) && (row == size - 1 || dates[row] >= dates[row + 1]);
+    }
+
+    // Bookkeeping for a row just written at the end
+    private void appended(int row) {
+        knownSorted = knownSorted && (row == 0 || dates[row - 1] >= dates[row]);
+        if (indexValid) {
+            if ((size << 1) > indexIds.length) {
+                indexValid = false; // Grown past half full; rebuilt larger on the next lookup
+            } else {
+                put(ids[row], row);
+            }
+        }
+    }
+
+    private void rebuildIndex() {
+        int capacity = Integer.highestOneBit(Math.max(16, size * 2 + 1)) << 1;
+        if (indexIds.length != capacity) {
+            indexIds = new long[capacity];
+            indexRows = new int[capacity];
+        } else {
+            Arrays.fill(indexRows, 0);
+        }
+        indexHasDuplicates = false;
+        for (int row = 0; row < size; row++) {
+            put(ids[row], row);
+        }
+        indexValid = true;
+    }
+
+    private void put(long id, int row) {
+        int mask = indexIds.length - 1;
+        int slot = slot(id, mask);
+        while (indexRows[slot] != 0 && indexIds[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        if (indexRows[slot] != 0) {
+            indexHasDuplicates = true;
+        }
+        indexIds[slot] = id;
+        indexRows[slot] = row + 1;
+    }
+
+    // Remove an id, moving later entries of its probe run back so lookups still find them
+    private void delete(long id) {
+        int mask = indexIds.length - 1;
+        int hole = slot(id, mask);
+        while (indexRows[hole] != 0 && indexIds[hole] != id) {
+            hole = (hole + 1) & mask;
+        }
+        if (indexRows[hole] == 0) {
+            return;
+        }
+        for (int next = (hole + 1) & mask; indexRows[next] != 0; next = (next + 1) & mask) {
+            int home = slot(indexIds[next], mask);
+            // The entry may fill the hole only if the hole lies between its home slot and where it is
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                indexIds[hole] = indexIds[next];
+                indexRows[hole] = indexRows[next];
+                hole = next;
+            }
+        }
+        indexRows[hole] = 0;
+    }
+
+    // Add delta to every indexed row at or after from; a scan of the slots, without hashing
+    private void shiftIndexedRows(int from, int delta) {
+        int[] rows = indexRows;
+        for (int slot = 0; slot < rows.length; slot++) {
+            // Branch-free, since rows sit in random slots: the mask is -1 exactly when rows[slot] > from
+            rows[slot] += delta & ((from - rows[slot]) >> 31);
+        }
+    }
+
+    private static int slot(long id, int mask) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void moveRow(int from, int to) {
+        ids[to] = ids[from];
+        types[to] = types[from];
+        dates[to] = dates[from];
+        editDates[to] = editDates[from];
+        amounts[to] = amounts[from];
+        categories[to] = categories[from];
+        sources[to] = sources[from];
+        notes[to] = notes[from];
+    }
+
+    private void write(int row, Transaction t) {
+        ids[row] = t.getId();
+        types[row] = t.getType() == null ? -1 : (byte) t.getType().ordinal();
+        dates[row] = toEpochDay(t.getDate());
+        editDates[row] = toEpochDay(t.getEditTime());
+        amounts[row] = t.getAmount();
+        categories[row] = encode(t.getCategory());
+        sources[row] = encode(t.getSource());
+        notes[row] = t.getNote();
+    }
+
+    private int encode(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = dictionaryIds.get(value);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.add(value);
+            dictionaryIds.put(value, id);
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        dates = Arrays.copyOf(dates, newCapacity);
+        editDates = Arrays.copyOf(editDates, newCapacity);
+        amounts = Arrays.copyOf(amounts, newCapacity);
+        categories = Arrays.copyOf(categories, newCapacity);
+        sources = Arrays.copyOf(sources, newCapacity);
+        notes = Arrays.copyOf(notes, newCapacity);
+    }
+
+    private void checkIndex(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    static LocalDate toDate(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    static int toEpochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+}
@@ -0,0 +1,210 @@
+package controller;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Transaction;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming Gson adapter for Transaction.
+ * Reads and writes fields straight from the token stream, so neither a JsonElement
+ * tree nor reflection is involved when loading or saving a ledger.
+ */
+public class TransactionTypeAdapter extends TypeAdapter<Transaction> {
+
+    public static final TransactionTypeAdapter INSTANCE = new TransactionTypeAdapter();
+
+    // Categories and sources repeat on almost every row, so keep one copy of each
+    private static final int MAX_POOLED_STRINGS = 4096;
+    private static final Map<String, String> STRING_POOL = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(JsonWriter out, Transaction t) throws IOException {
+        if (t == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(t.getId());
+        if (t.getType() != null) out.name("type").value(t.getType().name());
+        if (t.getCategory() != null) out.name("category").value(t.getCategory());
+        out.name("amount").value(t.getAmount());
+        if (t.getDate() != null) out.name("date").value(formatDate(t.getDate()));
+        if (t.getNote() != null) out.name("note").value(t.getNote());
+        if (t.getSource() != null) out.name("source").value(t.getSource());
+        if (t.getEditTime() != null) out.name("editTime").value(formatDate(t.getEditTime()));
+        out.endObject();
+    }
+
+    @Override
+    public Transaction read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        long id = 0;
+        Transaction.Type type = null;
+        String category = null;
+        double amount = 0;
+        LocalDate date = null;
+        String note = null;
+        String source = null;
+        LocalDate editTime = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = in.nextLong();
+                    break;
+                case "type":
+                    type = parseType(in.nextString());
+                    break;
+                case "category":
+                    category = pooled(in.nextString());
+                    break;
+                case "amount":
+                    amount = in.nextDouble();
+                    break;
+                case "date":
+                    date = readDate(in);
+                    break;
+                case "note":
+                    note = in.nextString();
+                    break;
+                case "source":
+                    source = pooled(in.nextString());
+                    break;
+                case "editTime":
+                    editTime = readDate(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        Transaction t = new Transaction(type, category, amount, date, note, source, editTime);
+        t.setId(id);
+        return t;
+    }
+
+    /**
+     * The type with this name, or null for a name that is not a type, as Gson's enum adapter did
+     */
+    private static Transaction.Type parseType(String value) {
+        switch (value) {
+            case "INCOME":
+                return Transaction.Type.INCOME;
+            case "EXPENSE":
+                return Transaction.Type.EXPENSE;
+            default:
+                return null;
+        }
+    }
+
+    private static String pooled(String value) {
+        String existing = STRING_POOL.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (STRING_POOL.size() < MAX_POOLED_STRINGS) {
+            STRING_POOL.putIfAbsent(value, value);
+        }
+        return value;
+    }
+
+    /**
+     * Read a date written either as "yyyy-MM-dd" or as a {year, month, day} object
+     */
+    static LocalDate readDate(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.BEGIN_OBJECT) {
+            int year = 0, month = 1, day = 1;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "year": year = in.nextInt(); break;
+                    case "month": month = in.nextInt(); break;
+                    case "day": day = in.nextInt(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            try {
+                return LocalDate.of(year, month, day);
+            } catch (Exception e) {
+                System.err.println("Failed to parse date: " + year + "-" + month + "-" + day + ", using current date.");
+                return LocalDate.now();
+            }
+        }
+
+        String text = in.nextString();
+        LocalDate date = parseIsoDate(text);
+        if (date == null) {
+            try {
+                date = LocalDate.parse(text);
+            } catch (Exception e) {
+                System.err.println("Failed to parse date: " + text + ", using current date.");
+                date = LocalDate.now();
+            }
+        }
+        return date;
+    }
+
+    /**
+     * Parse "yyyy-MM-dd" without going through DateTimeFormatter
+     * @return the date, or null if the text is not in that exact shape
+     */
+    static LocalDate parseIsoDate(String s) {
+        if (s.length() != 10 || s.charAt(4) != '-' || s.charAt(7) != '-') {
+            return null;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 7);
+        int day = digits(s, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    static String formatDate(LocalDate date) {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            return date.toString();
+        }
+        char[] buf = {
+                (char) ('0' + year / 1000), (char) ('0' + year / 100 % 10),
+                (char) ('0' + year / 10 % 10), (char) ('0' + year % 10), '-',
+                (char) ('0' + date.getMonthValue() / 10), (char) ('0' + date.getMonthValue() % 10), '-',
+                (char) ('0' + date.getDayOfMonth() / 10), (char) ('0' + date.getDayOfMonth() % 10)
+        };
+        return new String(buf);
+    }
+}
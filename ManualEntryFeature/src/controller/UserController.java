@@ -1,34 +1,51 @@
 package controller;
 
-import com.google.gson.reflect.TypeToken;
 import model.User;
 import util.JsonUtil;
 import util.HashUtil;
 
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.regex.Pattern;
 
 public class UserController {
     private static final File USER_FILE = new File("PersonalFinanceTracker/users.json");
-    private List<User> userList;
+    // Usernames become part of file names, so no separators or other path syntax
+    private static final Pattern USERNAME = Pattern.compile("[\\p{L}\\p{N}_.-]{1,64}");
+    private final UserRegistry registry;
 
     public UserController() {
-        userList = JsonUtil.readJson(USER_FILE, new TypeToken<List<User>>(){}.getType());
-        if (userList == null) {
-        userList = new ArrayList<>();
-        saveUsers(); 
+        this(new UserRegistry(USER_FILE));
+        try {
+            registry.load();
+        } catch (IOException e) {
+            System.err.println("Failed to load users: " + e.getMessage());
         }
     }
 
+    /**
+     * Use an already loaded registry, e.g. one shared with other controllers
+     */
+    public UserController(UserRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Whether a name may be registered: 1 to 64 letters, digits, '_', '.' or '-', without ".."
+     */
+    public static boolean isValidUsername(String username) {
+        return username != null && USERNAME.matcher(username).matches() && !username.contains("..");
+    }
+
    public boolean register(String username, String password) {
-    if (getUserByUsername(username) != null) return false;
+    if (!isValidUsername(username) || getUserByUsername(username) != null) return false;
 
     String hashed = HashUtil.hash(password);
     User user = new User(username, hashed);
-    userList.add(user);
-    saveUsers();
+    // The registry rejects the name if another thread registered it meanwhile
+    if (!registry.register(user)) return false;
 
     // ✅ Ensure the directory exists before creating file
     File dir = new File("PersonalFinanceTracker");
@@ -55,11 +72,7 @@ public class UserController {
     }
 
     private User getUserByUsername(String username) {
-        return userList.stream().filter(u -> u.getUsername().equals(username)).findFirst().orElse(null);
-    }
-
-    private void saveUsers() {
-        JsonUtil.writeJson(USER_FILE, userList);
+        return registry.get(username);
     }
 }
 
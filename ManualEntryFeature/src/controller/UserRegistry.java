@@ -0,0 +1,209 @@
+package controller;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import model.User;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registered users, indexed by username in a hash map.
+ * The snapshot file (users.json) keeps its JSON array format; each registration is
+ * appended as one compact JSON line to a log next to it (users.log) instead of
+ * rewriting the snapshot, and the log is folded back into the snapshot every
+ * COMPACT_THRESHOLD records, or before the next append after a torn record.
+ * Lookups never lock and registrations only lock to append their log line, so both
+ * are safe from any number of threads.
+ */
+public class UserRegistry {
+
+    // Log records after which the log is folded into the snapshot
+    private static final int COMPACT_THRESHOLD = 1000;
+
+    private static final Gson SNAPSHOT_GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Gson LOG_GSON = new Gson();
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final ConcurrentHashMap<String, User> users = new ConcurrentHashMap<>();
+
+    // Guards logWriter, logRecords and tornLog
+    private final Object logLock = new Object();
+    private Writer logWriter;
+    private int logRecords;
+    private boolean tornLog;
+
+    /**
+     * @param snapshotFile the users.json snapshot; the log sits next to it
+     */
+    public UserRegistry(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+        String path = snapshotFile.getPath();
+        String base = path.endsWith(".json") ? path.substring(0, path.length() - 5) : path;
+        this.logFile = new File(base + ".log");
+    }
+
+    /**
+     * Read the snapshot and replay the log on top of it
+     */
+    public void load() throws IOException {
+        synchronized (logLock) {
+            users.clear();
+            if (snapshotFile.exists()) {
+                List<User> snapshot;
+                try (Reader reader = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(snapshotFile), StandardCharsets.UTF_8))) {
+                    snapshot = SNAPSHOT_GSON.fromJson(reader, new TypeToken<List<User>>(){}.getType());
+                } catch (JsonParseException e) {
+                    throw new IOException("Unreadable user file " + snapshotFile + ": " + e.getMessage(), e);
+                }
+                if (snapshot != null) {
+                    for (User user : snapshot) {
+                        if (user != null && user.getUsername() != null) {
+                            users.putIfAbsent(user.getUsername(), user);
+                        }
+                    }
+                }
+            }
+            tornLog = false;
+            logRecords = replay();
+            // New records must not be appended to a torn line, or they would be lost with it
+            if (logRecords >= COMPACT_THRESHOLD || tornLog) {
+                compact();
+            }
+        }
+    }
+
+    private int replay() throws IOException {
+        if (!logFile.exists()) {
+            return 0;
+        }
+        int applied = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(logFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                User user;
+                try {
+                    user = LOG_GSON.fromJson(line, User.class);
+                } catch (JsonParseException e) {
+                    // A torn line from a crash or failed write; the records after it are still good
+                    System.err.println("Ignoring unreadable user record in " + logFile + ": " + e.getMessage());
+                    tornLog = true;
+                    continue;
+                }
+                if (user != null && user.getUsername() != null) {
+                    // The first registration of a name wins, as it did when it was made
+                    users.putIfAbsent(user.getUsername(), user);
+                }
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * The user with this name, or null
+     */
+    public User get(String username) {
+        return username == null ? null : users.get(username);
+    }
+
+    public boolean contains(String username) {
+        return get(username) != null;
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * Add a user unless the name is taken. Two threads registering one name cannot
+     * both succeed; if the log record cannot be written the name is released again.
+     * @return false if the name is taken or the user could not be stored
+     */
+    public boolean register(User user) {
+        if (users.putIfAbsent(user.getUsername(), user) != null) {
+            return false;
+        }
+        synchronized (logLock) {
+            try {
+                if (tornLog) {
+                    // A failed write may have left part of a line; never append after it
+                    compact();
+                }
+                if (logWriter == null) {
+                    File parent = logFile.getAbsoluteFile().getParentFile();
+                    if (parent != null && !parent.exists()) {
+                        parent.mkdirs();
+                    }
+                    logWriter = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(logFile, true), StandardCharsets.UTF_8));
+                }
+                logWriter.write(LOG_GSON.toJson(user));
+                logWriter.write('\n');
+                logWriter.flush();
+                logRecords++;
+            } catch (IOException e) {
+                System.err.println("Could not store user " + user.getUsername() + ": " + e.getMessage());
+                users.remove(user.getUsername(), user);
+                closeLog();
+                tornLog = true;
+                return false;
+            }
+            if (logRecords >= COMPACT_THRESHOLD) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    // The log still holds every record; the next registration tries again
+                    System.err.println("Could not compact user log " + logFile + ": " + e.getMessage());
+                }
+            }
+            return true;
+        }
+    }
+
+    private void closeLog() {
+        if (logWriter != null) {
+            try {
+                logWriter.close();
+            } catch (IOException e) {
+                System.err.println("Could not close user log " + logFile + ": " + e.getMessage());
+            }
+            logWriter = null;
+        }
+    }
+
+    /**
+     * Write every user to the snapshot and discard the log
+     */
+    public void compact() throws IOException {
+        synchronized (logLock) {
+            closeLog();
+            File parent = snapshotFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            File tmp = new File(snapshotFile.getPath() + ".tmp");
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+                SNAPSHOT_GSON.toJson(new ArrayList<>(users.values()), writer);
+            }
+            Files.move(tmp.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Replay skips names it already has, so a crash before this delete is harmless
+            Files.deleteIfExists(logFile.toPath());
+            logRecords = 0;
+            tornLog = false;
+        }
+    }
+}
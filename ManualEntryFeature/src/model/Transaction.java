@@ -7,6 +7,7 @@ public class Transaction {
         INCOME, EXPENSE
     }
 
+    private long id;
     private Type type;
     private String category;
     private double amount;
@@ -33,6 +34,8 @@ public class Transaction {
     }
 
     // Getters and Setters
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
     public Type getType() { return type; }
     public String getCategory() { return category; }
     public double getAmount() { return amount; }
@@ -0,0 +1,194 @@
+package service;
+
+import controller.AppConfig;
+import model.User;
+
+import java.util.*;
+
+/**
+ * Keeps the ledgers of recently active users in memory, so their requests neither
+ * rebuild a TransactionController nor re-read its files. Ledgers are evicted least
+ * recently used first once there are more than maxLedgers of them or their estimated
+ * heap exceeds maxBytes. An evicted ledger is saved before it is dropped, so the next
+ * load reads one snapshot instead of replaying its journal.
+ *
+ * Requests pin the ledger they use between acquire and release, and pinned ledgers
+ * are never evicted, so one user never has two controllers over the same files. A
+ * user who comes back while their ledger is still being saved gets that same ledger.
+ */
+public class LedgerCache {
+
+    private static class Entry {
+        final UserLedger ledger;
+        int pins;
+        int pendingSaves;
+        long bytes;
+
+        Entry(UserLedger ledger) {
+            this.ledger = ledger;
+            this.bytes = ledger.estimatedBytes();
+        }
+    }
+
+    private final int maxLedgers;
+    private final long maxBytes;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Entry> flushing = new HashMap<>();
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxLedgers most ledgers kept in memory
+     * @param maxBytes most estimated heap for all kept ledgers together
+     */
+    public LedgerCache(int maxLedgers, long maxBytes) {
+        this.maxLedgers = Math.max(1, maxLedgers);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * A cache sized from AppConfig
+     */
+    public static LedgerCache fromConfig() {
+        return new LedgerCache(AppConfig.getServerCacheMaxLedgers(),
+                AppConfig.getServerCacheMaxMb() * 1024L * 1024L);
+    }
+
+    /**
+     * The user's ledger, pinned until release; it loads its files on first use
+     */
+    public UserLedger acquire(User user) {
+        Entry entry;
+        List<Entry> evicted;
+        synchronized (this) {
+            String name = user.getUsername();
+            entry = entries.get(name);
+            if (entry == null) {
+                // Still being saved after eviction: take it back rather than load a second copy
+                entry = flushing.remove(name);
+                if (entry == null) {
+                    entry = new Entry(new UserLedger(user));
+                    misses++;
+                } else {
+                    hits++;
+                }
+                totalBytes += entry.bytes;
+                entries.put(name, entry);
+            } else {
+                hits++;
+            }
+            entry.pins++;
+            evicted = evictOverBudget();
+        }
+        flush(evicted);
+        return entry.ledger;
+    }
+
+    /**
+     * Unpin a ledger from acquire; its size is measured again since the request may have grown it
+     */
+    public void release(UserLedger ledger) {
+        List<Entry> evicted;
+        synchronized (this) {
+            Entry entry = entries.get(ledger.getUsername());
+            if (entry == null || entry.ledger != ledger) {
+                return;
+            }
+            entry.pins--;
+            long bytes = ledger.estimatedBytes();
+            totalBytes += bytes - entry.bytes;
+            entry.bytes = bytes;
+            evicted = evictOverBudget();
+        }
+        flush(evicted);
+    }
+
+    private List<Entry> evictOverBudget() {
+        List<Entry> evicted = Collections.emptyList();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxLedgers || totalBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            Entry entry = eldest.getValue();
+            if (entry.pins > 0) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= entry.bytes;
+            flushing.put(eldest.getKey(), entry);
+            entry.pendingSaves++;
+            evictions++;
+            if (evicted.isEmpty()) {
+                evicted = new ArrayList<>();
+            }
+            evicted.add(entry);
+        }
+        return evicted;
+    }
+
+    // Save outside the cache lock; other users' requests go on meanwhile
+    private void flush(List<Entry> evicted) {
+        for (Entry entry : evicted) {
+            try {
+                entry.ledger.save();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to save ledger of " + entry.ledger.getUsername() + ": " + e.getMessage());
+            }
+            synchronized (this) {
+                // Taken back and evicted again meanwhile: the later save still owns it
+                if (--entry.pendingSaves == 0) {
+                    flushing.remove(entry.ledger.getUsername(), entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Save every ledger in memory, e.g. on shutdown
+     */
+    public void saveAll() {
+        List<Entry> all;
+        synchronized (this) {
+            all = new ArrayList<>(entries.values());
+            all.addAll(flushing.values());
+        }
+        for (Entry entry : all) {
+            try {
+                entry.ledger.save();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to save ledger of " + entry.ledger.getUsername() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Share of acquires that found the ledger in memory
+     */
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
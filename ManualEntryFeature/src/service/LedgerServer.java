@@ -0,0 +1,668 @@
+package service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import controller.BulkCategorizer;
+import controller.TransactionController;
+import controller.TransactionRollup;
+import controller.TransactionStore;
+import controller.TransactionTypeAdapter;
+import controller.UserController;
+import controller.UserRegistry;
+import controller.TransactionCategorizer;
+import model.Transaction;
+import model.User;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless mode: serves the ledgers of all users over a local HTTP/JSON API.
+ *
+ * Every request runs on its own virtual thread where the JVM has them, otherwise on
+ * a fixed pool. Requests of different users never wait for each other; requests of
+ * one user share that user's ledger through a read/write lock (see UserLedger).
+ * Recently used ledgers stay in memory within a budget (see LedgerCache).
+ * Ledgers are read and written with the same files and formats as the desktop app.
+ * Category edits are not learned as corrections: the classifiers are shared by the
+ * whole process, and one user's corrections must not change another's categories.
+ *
+ * POST   /api/register                  {"username", "password"}
+ * POST   /api/login                     {"username", "password"} -> {"token"}
+ * POST   /api/logout
+ * GET    /api/transactions              ?from, to (yyyy-MM-dd), type, category, offset, limit
+ * POST   /api/transactions              a transaction; categorized automatically if it has no category
+ * PUT    /api/transactions/{id}         a transaction
+ * DELETE /api/transactions/{id}
+ * PUT    /api/transactions/{id}/category {"category"}
+ * GET    /api/categories
+ * GET    /api/summary                   ?month (yyyy-MM, default this month)
+ * POST   /api/categorize                a transaction -> {"category"}, nothing is stored
+ * POST   /api/recategorize
+ * GET    /api/cache                     ledger cache size, hits, misses and evictions
+ *
+ * All but register and login need "Authorization: Bearer {token}". Request bodies
+ * must be sent as application/json, and requests from a web page of another origin
+ * are refused, so a browser cannot be used to reach the server behind the user's back.
+ */
+public class LedgerServer {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10000;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final long SESSION_IDLE_MILLIS = 12 * 60 * 60 * 1000L;
+    // Beyond this many live sessions, a login signs out the least recently used one
+    private static final int MAX_SESSIONS = 10000;
+
+    private static final TransactionTypeAdapter ADAPTER = TransactionTypeAdapter.INSTANCE;
+
+    /**
+     * A request that cannot be served; becomes an {"error"} response with the status
+     */
+    private static class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static class Session {
+        final User user;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Session(User user) {
+            this.user = user;
+        }
+    }
+
+    private final int port;
+    private final UserRegistry registry;
+    private final UserController users;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final LedgerCache ledgers;
+    private final SecureRandom random = new SecureRandom();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param port local port to listen on, 0 for any free port
+     * @param registry loaded user registry
+     * @param ledgers cache of the ledgers kept in memory
+     */
+    public LedgerServer(int port, UserRegistry registry, LedgerCache ledgers) {
+        this.port = port;
+        this.registry = registry;
+        this.users = new UserController(registry);
+        this.ledgers = ledgers;
+    }
+
+    /**
+     * A server with a ledger cache sized from AppConfig
+     */
+    public LedgerServer(int port, UserRegistry registry) {
+        this(port, registry, LedgerCache.fromConfig());
+    }
+
+    /**
+     * Start listening on the loopback interface
+     */
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        server.start();
+    }
+
+    /**
+     * The port actually listened on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop accepting requests, wait briefly for running ones and save every loaded ledger
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+        }
+        ledgers.saveAll();
+        TransactionCategorizer.saveUserCorrectionHistory();
+    }
+
+    /**
+     * One virtual thread per request on Java 21+, found reflectively so the code
+     * still compiles and runs on older JDKs, which get a fixed pool instead
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(16, Runtime.getRuntime().availableProcessors() * 8);
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "ledger-request-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ---- Dispatch ----
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            checkOrigin(exchange);
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            switch (path[0]) {
+                case "register":
+                    requireMethod(method, "POST");
+                    register(exchange);
+                    return;
+                case "login":
+                    requireMethod(method, "POST");
+                    login(exchange);
+                    return;
+                default:
+                    break;
+            }
+
+            String token = token(exchange);
+            Session session = session(token);
+            switch (path[0]) {
+                case "logout":
+                    requireMethod(method, "POST");
+                    sessions.remove(token);
+                    sendEmpty(exchange, 204);
+                    return;
+                case "categorize":
+                    requireMethod(method, "POST");
+                    categorize(exchange);
+                    return;
+                case "cache":
+                    requireMethod(method, "GET");
+                    cacheStats(exchange);
+                    return;
+                default:
+                    break;
+            }
+
+            // Pinned for the whole request, so it cannot be evicted and loaded twice
+            UserLedger ledger = ledgers.acquire(session.user);
+            try {
+                switch (path[0]) {
+                    case "transactions":
+                        transactions(exchange, method, path, query, ledger);
+                        return;
+                    case "categories":
+                        requireMethod(method, "GET");
+                        categories(exchange, ledger);
+                        return;
+                    case "summary":
+                        requireMethod(method, "GET");
+                        summary(exchange, query, ledger);
+                        return;
+                    case "recategorize":
+                        requireMethod(method, "POST");
+                        recategorize(exchange, ledger);
+                        return;
+                    default:
+                        throw new ApiException(404, "Unknown endpoint " + exchange.getRequestURI().getPath());
+                }
+            } finally {
+                ledgers.release(ledger);
+            }
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Request " + exchange.getRequestURI() + " failed: " + e);
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void transactions(HttpExchange exchange, String method, String[] path,
+                              Map<String, String> query, UserLedger ledger) throws Exception {
+        if (path.length == 1) {
+            if ("GET".equals(method)) {
+                listTransactions(exchange, query, ledger);
+            } else if ("POST".equals(method)) {
+                addTransaction(exchange, ledger);
+            } else {
+                throw new ApiException(405, "Method not allowed");
+            }
+            return;
+        }
+        long id = parseLong(path[1], "id");
+        if (path.length == 2 && "PUT".equals(method)) {
+            updateTransaction(exchange, id, ledger);
+        } else if (path.length == 2 && "DELETE".equals(method)) {
+            deleteTransaction(exchange, id, ledger);
+        } else if (path.length == 3 && "category".equals(path[2]) && "PUT".equals(method)) {
+            updateCategory(exchange, id, ledger);
+        } else {
+            throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    // ---- Users and sessions ----
+
+    private void register(HttpExchange exchange) throws Exception {
+        JsonObject body = readObject(exchange);
+        String username = requireString(body, "username");
+        String password = requireString(body, "password");
+        if (!UserController.isValidUsername(username)) {
+            throw new ApiException(400, "Username may only contain letters, digits, '_', '.' and '-'");
+        }
+        if (!users.register(username, password)) {
+            throw new ApiException(409, "Username is taken");
+        }
+        sendEmpty(exchange, 201);
+    }
+
+    private void login(HttpExchange exchange) throws Exception {
+        JsonObject body = readObject(exchange);
+        User user = users.login(requireString(body, "username"), requireString(body, "password"));
+        if (user == null) {
+            throw new ApiException(401, "Wrong username or password");
+        }
+        if (!UserController.isValidUsername(user.getUsername())) {
+            // Registered before names were checked; its name cannot be used in file paths here
+            throw new ApiException(403, "This user cannot sign in to the server");
+        }
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        dropIdleSessions();
+        sessions.put(token, new Session(user));
+        sendJson(exchange, 200, out -> out.beginObject().name("token").value(token).endObject());
+    }
+
+    private static String token(HttpExchange exchange) throws ApiException {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            throw new ApiException(401, "Missing bearer token");
+        }
+        return header.substring("Bearer ".length()).trim();
+    }
+
+    /**
+     * Forget sessions that have been idle too long, and make room if too many are left.
+     * Tokens that are never presented again would otherwise stay in the map for good.
+     */
+    private void dropIdleSessions() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> now - session.lastUsed > SESSION_IDLE_MILLIS);
+        while (sessions.size() >= MAX_SESSIONS) {
+            String oldest = null;
+            long oldestUse = Long.MAX_VALUE;
+            for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+                if (entry.getValue().lastUsed < oldestUse) {
+                    oldestUse = entry.getValue().lastUsed;
+                    oldest = entry.getKey();
+                }
+            }
+            if (oldest == null) {
+                break;
+            }
+            sessions.remove(oldest);
+        }
+    }
+
+    private Session session(String token) throws ApiException {
+        Session session = sessions.get(token);
+        long now = System.currentTimeMillis();
+        if (session == null || now - session.lastUsed > SESSION_IDLE_MILLIS) {
+            if (session != null) {
+                sessions.remove(token, session);
+            }
+            throw new ApiException(401, "Not logged in");
+        }
+        session.lastUsed = now;
+        return session;
+    }
+
+    // ---- Ledger ----
+
+    private void listTransactions(HttpExchange exchange, Map<String, String> query, UserLedger ledger) throws Exception {
+        LocalDate from = parseDate(query.get("from"), "from");
+        LocalDate to = parseDate(query.get("to"), "to");
+        Transaction.Type type = parseType(query.get("type"));
+        String category = query.get("category");
+        int offset = (int) Math.max(0, parseLong(query.getOrDefault("offset", "0"), "offset"));
+        int limit = (int) Math.min(MAX_LIMIT, Math.max(0, parseLong(query.getOrDefault("limit", String.valueOf(DEFAULT_LIMIT)), "limit")));
+        int fromDay = from == null ? Integer.MIN_VALUE : (int) from.toEpochDay();
+        int toDay = to == null ? Integer.MAX_VALUE : (int) to.toEpochDay();
+        boolean dateFilter = from != null || to != null;
+
+        // Filter on the store columns and build Transactions only for the requested page
+        List<Transaction> page = new ArrayList<>();
+        int total = ledger.read(c -> {
+            TransactionStore store = c.getStore();
+            int matched = 0;
+            for (int row = 0; row < store.size(); row++) {
+                int day = store.getEpochDay(row);
+                if (dateFilter && (day == TransactionStore.NO_DATE || day < fromDay || day > toDay)) continue;
+                if (type != null && store.getType(row) != type) continue;
+                if (category != null && !category.equals(store.getCategory(row))) continue;
+                if (matched >= offset && page.size() < limit) {
+                    page.add(store.get(row));
+                }
+                matched++;
+            }
+            return matched;
+        });
+
+        sendJson(exchange, 200, out -> {
+            out.beginObject();
+            out.name("total").value(total);
+            out.name("offset").value(offset);
+            out.name("transactions").beginArray();
+            for (Transaction t : page) {
+                ADAPTER.write(out, t);
+            }
+            out.endArray();
+            out.endObject();
+        });
+    }
+
+    private void addTransaction(HttpExchange exchange, UserLedger ledger) throws Exception {
+        Transaction t = readTransaction(exchange);
+        // Categorizing may call a remote model, so it happens before taking the lock
+        Transaction stored = t.getCategory() == null || t.getCategory().trim().isEmpty()
+                ? TransactionCategorizer.categorize(t)
+                : t;
+        ledger.write(c -> {
+            c.addTransaction(stored);
+            return null;
+        });
+        sendJson(exchange, 201, out -> ADAPTER.write(out, stored));
+    }
+
+    private void updateTransaction(HttpExchange exchange, long id, UserLedger ledger) throws Exception {
+        Transaction t = readTransaction(exchange);
+        boolean found = ledger.write(c -> c.updateTransactionById(id, t));
+        if (!found) {
+            throw new ApiException(404, "No transaction " + id);
+        }
+        sendJson(exchange, 200, out -> ADAPTER.write(out, t));
+    }
+
+    private void deleteTransaction(HttpExchange exchange, long id, UserLedger ledger) throws Exception {
+        boolean found = ledger.write(c -> c.deleteTransactionById(id));
+        if (!found) {
+            throw new ApiException(404, "No transaction " + id);
+        }
+        sendEmpty(exchange, 204);
+    }
+
+    private void updateCategory(HttpExchange exchange, long id, UserLedger ledger) throws Exception {
+        String category = requireString(readObject(exchange), "category");
+        Transaction updated = ledger.write(c -> c.updateCategoryById(id, category) ? c.getTransactionById(id) : null);
+        if (updated == null) {
+            throw new ApiException(404, "No transaction " + id);
+        }
+        sendJson(exchange, 200, out -> ADAPTER.write(out, updated));
+    }
+
+    private void categories(HttpExchange exchange, UserLedger ledger) throws IOException {
+        SortedSet<String> categories = ledger.read(TransactionController::getUsedCategories);
+        sendJson(exchange, 200, out -> {
+            out.beginArray();
+            for (String category : categories) {
+                out.value(category);
+            }
+            out.endArray();
+        });
+    }
+
+    private void summary(HttpExchange exchange, Map<String, String> query, UserLedger ledger) throws Exception {
+        YearMonth month;
+        try {
+            month = query.containsKey("month") ? YearMonth.parse(query.get("month")) : YearMonth.now();
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "month must be yyyy-MM");
+        }
+        // The rollup is kept current by the controller, so no rows are scanned here
+        Object[] totals = ledger.read(c -> {
+            TransactionRollup rollup = c.getRollup();
+            return new Object[]{
+                    rollup.getTotal(month, Transaction.Type.INCOME),
+                    rollup.getTotal(month, Transaction.Type.EXPENSE),
+                    rollup.getCategoryTotals(month, Transaction.Type.EXPENSE)
+            };
+        });
+        @SuppressWarnings("unchecked")
+        Map<String, Double> byCategory = (Map<String, Double>) totals[2];
+        sendJson(exchange, 200, out -> {
+            out.beginObject();
+            out.name("month").value(month.toString());
+            out.name("income").value((double) totals[0]);
+            out.name("expense").value((double) totals[1]);
+            out.name("expenseByCategory").beginObject();
+            for (Map.Entry<String, Double> entry : byCategory.entrySet()) {
+                out.name(String.valueOf(entry.getKey())).value(entry.getValue());
+            }
+            out.endObject();
+            out.endObject();
+        });
+    }
+
+    private void categorize(HttpExchange exchange) throws Exception {
+        Transaction categorized = TransactionCategorizer.categorize(readTransaction(exchange));
+        sendJson(exchange, 200, out -> out.beginObject().name("category").value(categorized.getCategory()).endObject());
+    }
+
+    private void cacheStats(HttpExchange exchange) throws IOException {
+        sendJson(exchange, 200, out -> out.beginObject()
+                .name("ledgers").value(ledgers.size())
+                .name("estimatedBytes").value(ledgers.getEstimatedBytes())
+                .name("hits").value(ledgers.getHits())
+                .name("misses").value(ledgers.getMisses())
+                .name("evictions").value(ledgers.getEvictions())
+                .name("hitRatio").value(ledgers.getHitRatio())
+                .endObject());
+    }
+
+    private void recategorize(HttpExchange exchange, UserLedger ledger) throws Exception {
+        // Categorize a copy without holding the lock; rows edited meanwhile are left alone
+        List<Transaction> snapshot = ledger.read(c -> new ArrayList<>(c.getAllTransactions()));
+        List<Transaction> categorized = new BulkCategorizer().categorizeAll(snapshot, null);
+        int applied = ledger.write(c -> c.applyCategories(snapshot, categorized));
+        sendJson(exchange, 200, out -> out.beginObject().name("updated").value(applied).endObject());
+    }
+
+    // ---- Request parsing ----
+
+    private static void requireMethod(String method, String expected) throws ApiException {
+        if (!expected.equals(method)) {
+            throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    /**
+     * Browsers send Origin with cross-site requests; only pages on this machine may call the API
+     */
+    private static void checkOrigin(HttpExchange exchange) throws ApiException {
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin == null) {
+            return;
+        }
+        try {
+            String host = URI.create(origin).getHost();
+            if ("localhost".equals(host) || "127.0.0.1".equals(host) || "[::1]".equals(host)) {
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            // Not a URI; refused below
+        }
+        throw new ApiException(403, "Cross-origin requests are not allowed");
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException, ApiException {
+        // A form or text/plain post is what a foreign web page could send without a preflight
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.trim().toLowerCase(Locale.ROOT).startsWith("application/json")) {
+            throw new ApiException(415, "Content-Type must be application/json");
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+                if (body.size() > MAX_BODY_BYTES) {
+                    throw new ApiException(413, "Request body too large");
+                }
+            }
+        }
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    private static JsonObject readObject(HttpExchange exchange) throws IOException, ApiException {
+        try {
+            JsonElement element = JsonParser.parseString(readBody(exchange));
+            if (!element.isJsonObject()) {
+                throw new ApiException(400, "Expected a JSON object");
+            }
+            return element.getAsJsonObject();
+        } catch (JsonParseException e) {
+            throw new ApiException(400, "Malformed JSON: " + e.getMessage());
+        }
+    }
+
+    private static String requireString(JsonObject body, String name) throws ApiException {
+        JsonElement value = body.get(name);
+        if (value == null || !value.isJsonPrimitive() || value.getAsString().isEmpty()) {
+            throw new ApiException(400, "Missing " + name);
+        }
+        return value.getAsString();
+    }
+
+    /**
+     * A transaction in the ledger file format; ids and edit times are assigned by the ledger
+     */
+    private static Transaction readTransaction(HttpExchange exchange) throws IOException, ApiException {
+        Transaction t;
+        try (JsonReader reader = new JsonReader(new StringReader(readBody(exchange)))) {
+            t = ADAPTER.read(reader);
+        } catch (IllegalArgumentException | IllegalStateException | IOException e) {
+            throw new ApiException(400, "Malformed transaction: " + e.getMessage());
+        }
+        if (t == null || t.getType() == null) {
+            throw new ApiException(400, "A transaction needs a type");
+        }
+        if (t.getDate() == null) {
+            t = new Transaction(t.getType(), t.getCategory(), t.getAmount(), LocalDate.now(), t.getNote(), t.getSource());
+        }
+        return t;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static long parseLong(String value, String name) throws ApiException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, name + " must be a number");
+        }
+    }
+
+    private static LocalDate parseDate(String value, String name) throws ApiException {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, name + " must be yyyy-MM-dd");
+        }
+    }
+
+    private static Transaction.Type parseType(String value) throws ApiException {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Transaction.Type.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "type must be INCOME or EXPENSE");
+        }
+    }
+
+    // ---- Responses ----
+
+    private interface JsonBody {
+        void write(JsonWriter out) throws IOException;
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        // Buffered so the response has a length and the connection can be kept alive
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (JsonWriter out = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            body.write(out);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            bytes.writeTo(out);
+        }
+    }
+
+    private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            sendJson(exchange, status, out -> out.beginObject().name("error").value(message).endObject());
+        } catch (IOException e) {
+            // The client is gone, or the response was already started
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package service;
+
+import controller.TransactionController;
+import model.User;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * One user's TransactionController, shared by all of that user's requests.
+ * Reads run together under the read lock; anything that changes the ledger runs
+ * alone under the write lock. The ledger is loaded from disk on first use, in the
+ * same files and formats the desktop app uses.
+ */
+public class UserLedger {
+
+    // Rough heap cost of one row: store columns, note text, rollup and duplicate index entries
+    private static final long BYTES_PER_ROW = 200;
+    // Controller, indexes and maps of an empty ledger
+    private static final long BYTES_PER_LEDGER = 16 * 1024;
+
+    private final String username;
+    private final TransactionController controller;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+    private volatile int rows;
+
+    public UserLedger(User user) {
+        this.username = user.getUsername();
+        this.controller = new TransactionController(user);
+        // The classifiers are shared by every user of the process
+        this.controller.setLearnsCorrections(false);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Estimated heap held by this ledger, from its row count after the last change
+     */
+    public long estimatedBytes() {
+        return BYTES_PER_LEDGER + rows * BYTES_PER_ROW;
+    }
+
+    /**
+     * Run an action that only reads the ledger
+     */
+    public <T> T read(Function<TransactionController, T> action) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return action.apply(controller);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run an action that changes the ledger
+     */
+    public <T> T write(Function<TransactionController, T> action) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                load();
+            }
+            return action.apply(controller);
+        } finally {
+            rows = controller.getStore().size();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write a full snapshot and clear the journal, if anything changed since the last one
+     */
+    public void save() {
+        if (!loaded) {
+            return;
+        }
+        write(c -> {
+            c.saveTransactions();
+            return null;
+        });
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                load();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        controller.loadTransactions();
+        rows = controller.getStore().size();
+        loaded = true;
+    }
+}
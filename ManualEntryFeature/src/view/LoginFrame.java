@@ -67,7 +67,9 @@ public class LoginFrame extends JFrame {
     private void register() {
         String user = usernameField.getText();
         String pw = new String(passwordField.getPassword());
-        if (userController.register(user, pw)) {
+        if (!UserController.isValidUsername(user)) {
+            JOptionPane.showMessageDialog(this, "Username may only contain letters, digits, '_', '.' and '-'","Message", JOptionPane.INFORMATION_MESSAGE);
+        } else if (userController.register(user, pw)) {
             JOptionPane.showMessageDialog(this, "Registration success, please login","Message", JOptionPane.INFORMATION_MESSAGE);
         } else {
             JOptionPane.showMessageDialog(this, "Username already exists","Message", JOptionPane.INFORMATION_MESSAGE);
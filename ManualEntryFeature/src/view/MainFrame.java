@@ -1,14 +1,21 @@
 package view;
 
-import controller.CSVImporter;
+import controller.BulkCategorizer;
+import controller.CSVExporter;
+import controller.CSVImportPipeline;
+import controller.ImportReport;
+import controller.LedgerSnapshot;
 import controller.TransactionController;
+import controller.TransactionDateIndex;
+import controller.TransactionStore;
+import controller.TransactionRollup;
 import controller.TransactionCategorizer;
 import model.Transaction;
 import model.User;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -47,7 +54,6 @@ import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import javax.swing.SwingWorker;
-import java.util.concurrent.ExecutionException;
 
 import javax.swing.border.EmptyBorder;
 import java.awt.geom.RoundRectangle2D;
@@ -57,7 +63,8 @@ import java.awt.RenderingHints;
 
 public class MainFrame extends JFrame {
     private JTable table;
-    private DefaultTableModel tableModel;
+    private TransactionTableModel tableModel;
+    private TaskRunner tasks; // Runs imports, exports and recategorization in the background
     private TransactionController controller;
     private JLabel statusLabel; // Add status bar label
     private User currentUser;
@@ -90,13 +97,21 @@ public class MainFrame extends JFrame {
         add(statsPanel, BorderLayout.EAST);
         updateStatsPanel();
 
-        tableModel = new DefaultTableModel(new String[]{"Type", "Category", "Amount", "Date", "Note", "Source"}, 0) {
+        // Reads rows lazily from the controller and follows its row changes
+        tableModel = new TransactionTableModel(controller);
+        controller.addRowListener(tableModel);
+        table = new JTable(tableModel);
+
+        // Click a column header to sort: ascending, descending, then ledger order
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make the table non-editable
+            public void mouseClicked(MouseEvent e) {
+                int column = table.columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    tableModel.sortBy(table.convertColumnIndexToModel(column));
+                }
             }
-        };
-        table = new JTable(tableModel);
+        });
 
 // Add table double-click event handler
         table.addMouseListener(new MouseAdapter() {
@@ -128,8 +143,10 @@ public class MainFrame extends JFrame {
              */
             private void handleCategoryEdit(int row) {
                 // Get current values from table
-                String currentType = (String) tableModel.getValueAt(row, 0);
+                String currentType = String.valueOf(tableModel.getValueAt(row, 0));
                 String currentCategory = (String) tableModel.getValueAt(row, 1);
+                // The dialog lets an import move rows meanwhile; the id still finds this one
+                long id = tableModel.getId(row);
 
                 // Determine available categories based on transaction type
                 String[] categories = getCategoriesForType(currentType);
@@ -147,8 +164,7 @@ public class MainFrame extends JFrame {
 
                 // Update if category changed
                 if (newCategory != null && !newCategory.equals(currentCategory)) {
-                    controller.updateCategory(row, newCategory);
-                    updateTable();
+                    controller.updateCategoryById(id, newCategory);
                     statusLabel.setText("Transaction #" + (row + 1) + " category updated to: " + newCategory);
                 }
             }
@@ -159,7 +175,8 @@ public class MainFrame extends JFrame {
              */
             private void handleFullRecordEdit(int row) {
                 // Get original transaction
-                Transaction original = controller.getAllTransactions().get(row);
+                Transaction original = tableModel.getTransaction(row);
+                long id = original.getId();
 
                 // Create and show edit dialog
                 EditTransactionDialog dialog = new EditTransactionDialog(MainFrame.this, original);
@@ -168,8 +185,7 @@ public class MainFrame extends JFrame {
                 // Process changes if submitted
                 if (dialog.isSubmitted()) {
                     Transaction modified = dialog.getModifiedTransaction();
-                    controller.updateTransaction(row, modified);
-                    updateTable();
+                    controller.updateTransactionById(id, modified);
                     statusLabel.setText("Updated transaction #" + (row + 1));
                 }
             }
@@ -205,7 +221,6 @@ public class MainFrame extends JFrame {
 
         // Create toolbar
         JToolBar toolBar = createToolBar();
-        add(toolBar, BorderLayout.NORTH);
 
         JButton addBtn = new JButton("Add Transaction");
         addBtn.addActionListener(e -> {
@@ -216,7 +231,6 @@ public class MainFrame extends JFrame {
                 // Use categorizer to automatically categorize
                 Transaction categorizedT = TransactionCategorizer.categorize(t);
                 controller.addTransaction(categorizedT);
-                updateTable();
                 updateStatsPanel();
                 statusLabel.setText("Added new transaction and auto-categorized as: " + categorizedT.getCategory());
             }
@@ -224,31 +238,12 @@ public class MainFrame extends JFrame {
 
         JButton exportBtn = new JButton("Export CSV");
         exportBtn.addActionListener(e -> {
-            TableModel model = table.getModel();
-            try (FileWriter writer = new FileWriter("output.csv")) {
-                // Write column names (title) to CSV file
-                for (int i = 0; i < model.getColumnCount(); i++) {
-                    writer.append(model.getColumnName(i));
-                    if (i < model.getColumnCount() - 1) {
-                        writer.append(','); // Column separator, except for last column
-                    } else {
-                        writer.append('\n'); // Newline after last column
-                    }
-                }
-                // Write data rows to CSV file
-                for (int i = 0; i < model.getRowCount(); i++) {
-                    for (int j = 0; j < model.getColumnCount(); j++) {
-                        writer.append(String.valueOf(model.getValueAt(i, j))); // Convert value to string and write to CSV
-                        if (j < model.getColumnCount() - 1) {
-                            writer.append(','); // Column separator, except for last column
-                        } else {
-                            writer.append('\n'); // Newline after last column, indicating start of new data row
-                        }
-                    }
-                }
-                JOptionPane.showMessageDialog(this, "Export successful");
-            } catch (IOException e1) {
-                JOptionPane.showMessageDialog(this, "Error writing to file: " + e1.getMessage());
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setSelectedFile(new File("output.csv"));
+            int result = fileChooser.showSaveDialog(this);
+            if (result == JFileChooser.APPROVE_OPTION) {
+                // A name ending in .gz writes a gzip-compressed file
+                exportCSV(fileChooser.getSelectedFile().getPath());
             }
         });
 
@@ -258,13 +253,8 @@ public class MainFrame extends JFrame {
             int result = fileChooser.showOpenDialog(this);
             if (result == JFileChooser.APPROVE_OPTION) {
                 String filePath = fileChooser.getSelectedFile().getAbsolutePath();
-                List<Transaction> imported = CSVImporter.importFromCSV(filePath);
-                // Auto-categorize all transactions before importing
-                List<Transaction> categorizedImports = TransactionCategorizer.categorizeAll(imported);
-                controller.importTransactions(categorizedImports);
-                updateTable();
-                updateStatsPanel();
-                statusLabel.setText("Imported and auto-categorized " + imported.size() + " transactions");
+                // Parsed, auto-categorized and appended in batches in the background
+                importCSV(filePath);
             }
         });
 
@@ -286,33 +276,39 @@ public class MainFrame extends JFrame {
         // Add AI categorization button
         JButton recategorizeBtn = new JButton("Smart Recategorize All");
         recategorizeBtn.addActionListener(e -> {
-            controller.recategorizeAll();
-            updateTable();
-
             // Show different status by checking mode
+            String doneMessage;
             if (TransactionCategorizer.isUsingSimpleMode()) {
-                statusLabel.setText("All transactions recategorized using keyword matching (including Chinese context)");
+                doneMessage = "All transactions recategorized using keyword matching (including Chinese context)";
+            } else if (TransactionCategorizer.isUsingNaiveBayesMode()) {
+                doneMessage = "All transactions recategorized using the offline Naive Bayes classifier";
             } else {
                 // check if API is used
                 if (AppConfig.isUseAPI()) {
-                    statusLabel.setText("All transactions recategorized using AI classification with Chinese lifestyle patterns");
+                    doneMessage = "All transactions recategorized using AI classification with Chinese lifestyle patterns";
                 } else {
-                    statusLabel.setText("All transactions recategorized using advanced pattern matching");
+                    doneMessage = "All transactions recategorized using advanced pattern matching";
                 }
             }
+            recategorizeAll(doneMessage);
         });
         buttonPanel.add(recategorizeBtn);
         add(buttonPanel, BorderLayout.SOUTH);
 
         // Add status bar
         statusLabel = new JLabel("Ready - Using " +
-                (TransactionCategorizer.isUsingAdvancedMode() ? "Advanced Mode" : "Keyword Matching") +
+                TransactionCategorizer.getMode().getDisplayName() +
                 " for categorization" + (AppConfig.isUseAPI() ? " (API Enabled)" : "") +
                 " - Spring Festival Red Packet Detection Active");
         statusLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
-        add(statusLabel, BorderLayout.NORTH);
 
-        updateTable(); // Initial load of data to table
+        // Toolbar above the status bar, which also shows background task progress
+        tasks = new TaskRunner(this, statusLabel);
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(toolBar, BorderLayout.NORTH);
+        northPanel.add(tasks.getStatusPanel(), BorderLayout.SOUTH);
+        add(northPanel, BorderLayout.NORTH);
+
         setSize(1000, 450);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
@@ -329,13 +325,8 @@ public class MainFrame extends JFrame {
             int result = fileChooser.showOpenDialog(this);
             if (result == JFileChooser.APPROVE_OPTION) {
                 String filePath = fileChooser.getSelectedFile().getAbsolutePath();
-                List<Transaction> imported = CSVImporter.importFromCSV(filePath);
-                // Auto-categorize all transactions before importing
-                List<Transaction> categorizedImports = TransactionCategorizer.categorizeAll(imported);
-                controller.importTransactions(categorizedImports);
-                updateTable();
-                updateStatsPanel();
-                statusLabel.setText("Imported and auto-categorized " + imported.size() + " transactions");
+                // Parsed, auto-categorized and appended in batches in the background
+                importCSV(filePath);
             }
         });
 
@@ -367,7 +358,6 @@ public class MainFrame extends JFrame {
                 // Use categorizer to automatically categorize
                 Transaction categorizedT = TransactionCategorizer.categorize(t);
                 controller.addTransaction(categorizedT);
-                updateTable();
                 updateStatsPanel();
                 statusLabel.setText("Added new transaction and auto-categorized as: " + categorizedT.getCategory());
             }
@@ -379,8 +369,7 @@ public class MainFrame extends JFrame {
         deleteItem.addActionListener(e -> {
             int selectedRow = table.getSelectedRow();
             if (selectedRow >= 0) {
-                controller.deleteTransaction(selectedRow);
-                updateTable();
+                controller.deleteTransactionById(tableModel.getId(selectedRow));
                 statusLabel.setText("Deleted transaction #" + (selectedRow + 1));
             } else {
                 JOptionPane.showMessageDialog(this, "Please select a transaction to delete");
@@ -392,16 +381,16 @@ public class MainFrame extends JFrame {
         JMenuItem toggleAIItem = new JMenuItem("Toggle Categorization Mode");
         toggleAIItem.addActionListener(e -> {
             TransactionCategorizer.toggleMode();
+            if (TransactionCategorizer.isUsingNaiveBayesMode()) {
+                controller.trainOfflineClassifier();
+            }
             boolean isAdvancedMode = TransactionCategorizer.isUsingAdvancedMode();
-            statusLabel.setText("Current categorization mode: " + (isAdvancedMode ? "Advanced Mode (Chinese Context Aware)" : "Keyword Matching"));
+            statusLabel.setText("Current categorization mode: " + (isAdvancedMode ? "Advanced Mode (Chinese Context Aware)" : TransactionCategorizer.getMode().getDisplayName()));
         });
 
         JMenuItem recategorizeItem = new JMenuItem("Smart Recategorize All Transactions");
-        recategorizeItem.addActionListener(e -> {
-            controller.recategorizeAll();
-            updateTable();
-            statusLabel.setText("All transactions recategorized with Chinese lifestyle awareness");
-        });
+        recategorizeItem.addActionListener(e ->
+                recategorizeAll("All transactions recategorized with Chinese lifestyle awareness"));
 
 // Add API settings option
         JMenuItem apiSettingsItem = new JMenuItem("AI Categorization API Settings");
@@ -462,7 +451,6 @@ public class MainFrame extends JFrame {
                 // Use categorizer to automatically categorize
                 Transaction categorizedT = TransactionCategorizer.categorize(t);
                 controller.addTransaction(categorizedT);
-                updateTable();
                 updateStatsPanel();
             }
         });
@@ -473,11 +461,8 @@ public class MainFrame extends JFrame {
             int result = fileChooser.showOpenDialog(this);
             if (result == JFileChooser.APPROVE_OPTION) {
                 String filePath = fileChooser.getSelectedFile().getAbsolutePath();
-                List<Transaction> imported = CSVImporter.importFromCSV(filePath);
-                List<Transaction> categorizedImports = TransactionCategorizer.categorizeAll(imported);
-                controller.importTransactions(categorizedImports);
-                updateTable();
-                updateStatsPanel();
+                // Parsed, auto-categorized and appended in batches in the background
+                importCSV(filePath);
             }
         });
 
@@ -485,8 +470,7 @@ public class MainFrame extends JFrame {
         deleteButton.addActionListener(e -> {
             int selectedRow = table.getSelectedRow();
             if (selectedRow >= 0) {
-                controller.deleteTransaction(selectedRow);
-                updateTable();
+                controller.deleteTransactionById(tableModel.getId(selectedRow));
                 statusLabel.setText("Deleted transaction #" + (selectedRow + 1));
             } else {
                 JOptionPane.showMessageDialog(this, "Please select a transaction to delete");
@@ -498,13 +482,12 @@ public class MainFrame extends JFrame {
         editButton.addActionListener(e -> {
             int selectedRow = table.getSelectedRow();
             if (selectedRow >= 0) {
-                Transaction original = controller.getAllTransactions().get(selectedRow);
+                Transaction original = tableModel.getTransaction(selectedRow);
                 EditTransactionDialog dialog = new EditTransactionDialog(MainFrame.this, original);
                 dialog.setVisible(true);
                 if (dialog.isSubmitted()) {
                     Transaction modified = dialog.getModifiedTransaction();
-                    controller.updateTransaction(selectedRow, modified);
-                    updateTable();
+                    controller.updateTransactionById(original.getId(), modified);
                     statusLabel.setText("Updated transaction #" + (selectedRow + 1));
                 }
             } else {
@@ -519,9 +502,12 @@ public class MainFrame extends JFrame {
         JButton toggleModeButton = new JButton("Toggle Smart Mode");
         toggleModeButton.addActionListener(e -> {
             TransactionCategorizer.toggleMode();
+            if (TransactionCategorizer.isUsingNaiveBayesMode()) {
+                controller.trainOfflineClassifier();
+            }
             boolean isAdvancedMode = TransactionCategorizer.isUsingAdvancedMode();
             statusLabel.setText("Current categorization mode: " +
-                    (isAdvancedMode ? "Advanced Mode (Chinese Context)" : "Keyword Matching") +
+                    (isAdvancedMode ? "Advanced Mode (Chinese Context)" : TransactionCategorizer.getMode().getDisplayName()) +
                     (AppConfig.isUseAPI() ? " (API Enabled)" : ""));
         });
 
@@ -533,7 +519,6 @@ public class MainFrame extends JFrame {
                 Transaction t = dialog.getTransaction();
                 // Use controller's categorization method, not calling the categorizer directly
                 controller.addAndCategorizeTransaction(t);
-                updateTable();
                 statusLabel.setText("Added new transaction and auto-categorized as: " + t.getCategory());
             }
         });
@@ -544,11 +529,8 @@ public class MainFrame extends JFrame {
             int result = fileChooser.showOpenDialog(this);
             if (result == JFileChooser.APPROVE_OPTION) {
                 String filePath = fileChooser.getSelectedFile().getAbsolutePath();
-                // Use controller's import method, which will handle categorization
-                controller.importFromCSV(filePath);
-                updateTable();
-                updateStatsPanel();
-                statusLabel.setText("Imported and auto-categorized transactions with Chinese context awareness");
+                // Parsed, auto-categorized and appended in batches in the background
+                importCSV(filePath);
             }
         });
 
@@ -558,17 +540,153 @@ public class MainFrame extends JFrame {
         toolBar.addSeparator();
         toolBar.add(toggleModeButton);
 
+        // Filter the table as you type
+        JTextField filterField = new JTextField(15);
+        filterField.setMaximumSize(filterField.getPreferredSize());
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                tableModel.setFilter(filterField.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                tableModel.setFilter(filterField.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                tableModel.setFilter(filterField.getText());
+            }
+        });
+        toolBar.addSeparator();
+        toolBar.add(new JLabel("Filter: "));
+        toolBar.add(filterField);
+
         return toolBar;
     }
 
-    private void updateTable() {
-        tableModel.setRowCount(0);
-        List<Transaction> transactions = controller.getAllTransactions();
-        for (Transaction t : transactions) {
-            tableModel.addRow(new Object[]{
-                    t.getType(), t.getCategory(), t.getAmount(), t.getDate(), t.getNote(), t.getSource()
-            });
+    /**
+     * Stream a CSV file into the ledger without blocking the UI.
+     * Batches are appended on the EDT as soon as they are categorized, so the first
+     * rows show up while the rest of the file is still being read.
+     * Rows imported before a cancel stay in the ledger.
+     */
+    private void importCSV(String filePath) {
+        CSVImportPipeline pipeline = new CSVImportPipeline(filePath);
+        ImportReport report = new ImportReport(AppConfig.getDuplicatePolicy());
+        tasks.submit(new TaskRunner.Task<Long>("Import " + new File(filePath).getName()) {
+            @Override
+            protected Long compute() throws Exception {
+                // The table model receives each batch as an insert event
+                return pipeline.run(
+                        batch -> runOnEdt(() -> controller.importTransactions(batch, report)),
+                        (bytesRead, totalBytes, rowsImported) -> progress(
+                                totalBytes > 0 ? (int) (bytesRead * 100 / totalBytes) : -1,
+                                "Importing... " + rowsImported + " transactions"));
+            }
+
+            @Override
+            protected void onCancel() {
+                pipeline.cancel();
+            }
+
+            @Override
+            protected void succeeded(Long rows) {
+                statusLabel.setText(report.getSummary());
+                if (report.getDuplicateCount() > 0) {
+                    showDuplicates(report);
+                }
+            }
+
+            @Override
+            protected void finished() {
+                if (isCancelled()) {
+                    statusLabel.setText("Import cancelled - " + report.getSummary());
+                }
+                updateStatsPanel();
+            }
+        });
+    }
+
+    /**
+     * Recategorize every transaction in the background. The categorizer works on a
+     * snapshot of the ledger taken on the task thread; the new categories are written
+     * back on the EDT at the end, skipping rows that were edited meanwhile, and are
+     * journaled rather than saved as a full snapshot there. Cancelling leaves the
+     * ledger unchanged.
+     */
+    private void recategorizeAll(String doneMessage) {
+        BulkCategorizer categorizer = new BulkCategorizer();
+        tasks.submit(new TaskRunner.Task<Integer>("Recategorize") {
+            @Override
+            protected Integer compute() throws Exception {
+                // A column copy; its Transaction objects are built here, off the EDT
+                List<Transaction> snapshot = controller.snapshot().getTransactions();
+                List<Transaction> categorized = categorizer.categorizeAll(snapshot, (done, total) -> progress(
+                        total > 0 ? done * 100 / total : 100, "Recategorizing... " + done + " of " + total));
+                return callOnEdt(() -> controller.applyCategories(snapshot, categorized));
+            }
+
+            @Override
+            protected void onCancel() {
+                categorizer.cancel();
+            }
+
+            @Override
+            protected void succeeded(Integer rows) {
+                statusLabel.setText(doneMessage);
+                updateStatsPanel();
+            }
+        });
+    }
+
+    /**
+     * Write the ledger to a CSV file in the background
+     */
+    private void exportCSV(String fileName) {
+        CSVExporter exporter = new CSVExporter();
+        tasks.submit(new TaskRunner.Task<Long>("Export") {
+            private final File file = new File(fileName);
+
+            @Override
+            protected Long compute() throws Exception {
+                // The snapshot is only columns of primitives, and the table stays editable meanwhile
+                TransactionStore snapshot = callOnEdt(controller::snapshotStore);
+                return exporter.export(snapshot, file, (rowsScanned, totalRows, rowsWritten) -> progress(
+                        totalRows > 0 ? (int) ((long) rowsScanned * 100 / totalRows) : -1,
+                        "Exporting... " + rowsWritten + " transactions"));
+            }
+
+            @Override
+            protected void onCancel() {
+                exporter.cancel();
+            }
+
+            @Override
+            protected void succeeded(Long rows) {
+                statusLabel.setText("Exported " + rows + " transactions to " + file.getName());
+                JOptionPane.showMessageDialog(MainFrame.this, "Export successful");
+            }
+        });
+    }
+
+    /**
+     * List the first duplicates an import found
+     */
+    private void showDuplicates(ImportReport report) {
+        StringBuilder message = new StringBuilder(report.getSummary()).append(":\n\n");
+        List<Transaction> duplicates = report.getDuplicates();
+        int shown = Math.min(duplicates.size(), 15);
+        for (int i = 0; i < shown; i++) {
+            Transaction t = duplicates.get(i);
+            message.append(t.getDate()).append("  ").append(t.getType()).append("  ")
+                    .append(t.getAmount()).append("  ").append(t.getNote()).append('\n');
+        }
+        if (report.getDuplicateCount() > shown) {
+            message.append("... and ").append(report.getDuplicateCount() - shown).append(" more");
         }
+        JOptionPane.showMessageDialog(this, message.toString(), "Duplicate Transactions", JOptionPane.INFORMATION_MESSAGE);
     }
 
     /**
@@ -623,14 +741,14 @@ public class MainFrame extends JFrame {
     /**
      * Generate financial analysis report using DeepSeek API with enhanced Chinese context
      *
-     * @param transactions  List of transactions
+     * @param ledger Snapshot of the ledger to analyse
      * @param selectedMonth Selected month
      * @return Generated analysis report
      */
-    private String generateFinancialAnalysisViaAPI(List<Transaction> transactions, YearMonth selectedMonth) throws Exception {
+    private String generateFinancialAnalysisViaAPI(LedgerSnapshot ledger, YearMonth selectedMonth) throws Exception {
         // Check if API is enabled
         if (!AppConfig.isUseAPI()) {
-            return generateLocalFinancialAnalysis(transactions, selectedMonth);
+            return generateLocalFinancialAnalysis(ledger, selectedMonth);
         }
 
         // Get API configuration
@@ -643,41 +761,24 @@ public class MainFrame extends JFrame {
 
         try {
             // If no month selected, use the most recent month
+            TransactionDateIndex dateIndex = ledger.getDateIndex();
             YearMonth targetMonth = selectedMonth;
             if (targetMonth == null) {
-                // Find the most recent month
-                LocalDate mostRecent = LocalDate.MIN;
-                for (Transaction t : transactions) {
-                    if (t.getDate().isAfter(mostRecent)) {
-                        mostRecent = t.getDate();
-                    }
-                }
-                targetMonth = YearMonth.from(mostRecent);
-            }
-
-            // Filter transactions for the target month
-            List<Transaction> monthlyTransactions = new ArrayList<>();
-            for (Transaction t : transactions) {
-                if (YearMonth.from(t.getDate()).equals(targetMonth)) {
-                    monthlyTransactions.add(t);
+                targetMonth = dateIndex.latestMonth();
+                if (targetMonth == null) {
+                    targetMonth = YearMonth.from(LocalDate.MIN);
                 }
             }
 
-            // Prepare data summary for API analysis
-            double totalIncome = 0;
-            double totalExpense = 0;
-            Map<String, Double> expenseByCategory = new HashMap<>();
-            Map<String, Double> incomeByCategory = new HashMap<>();
+            // Transactions for the target month, straight from the date index
+            List<Transaction> monthlyTransactions = dateIndex.inMonth(targetMonth);
 
-            for (Transaction t : monthlyTransactions) {
-                if (t.getType() == Transaction.Type.INCOME) {
-                    totalIncome += t.getAmount();
-                    incomeByCategory.merge(t.getCategory(), t.getAmount(), Double::sum);
-                } else {
-                    totalExpense += t.getAmount();
-                    expenseByCategory.merge(t.getCategory(), t.getAmount(), Double::sum);
-                }
-            }
+            // Prepare data summary for API analysis from the pre-aggregated totals
+            TransactionRollup rollup = ledger.getRollup();
+            double totalIncome = rollup.getTotal(targetMonth, Transaction.Type.INCOME);
+            double totalExpense = rollup.getTotal(targetMonth, Transaction.Type.EXPENSE);
+            Map<String, Double> expenseByCategory = rollup.getCategoryTotals(targetMonth, Transaction.Type.EXPENSE);
+            Map<String, Double> incomeByCategory = rollup.getCategoryTotals(targetMonth, Transaction.Type.INCOME);
 
             // ===== NEW: BUDGET HABIT ANALYSIS DATA =====
             double currentBudget = getCurrentMonthlyBudget(); // Get from UI
@@ -685,7 +786,7 @@ public class MainFrame extends JFrame {
             double budgetRemaining = currentBudget - totalExpense;
 
             // Analyze historical budget performance (last 3 months)
-            Map<YearMonth, Double> historicalBudgetPerformance = getHistoricalBudgetPerformance(transactions, targetMonth, 3);
+            Map<YearMonth, Double> historicalBudgetPerformance = getHistoricalBudgetPerformance(ledger, targetMonth, 3);
 
             // Analyze spending patterns vs budget by category
             Map<String, Double> categoryBudgetAnalysis = analyzeCategoryBudgetHabits(expenseByCategory, currentBudget);
@@ -912,17 +1013,14 @@ public class MainFrame extends JFrame {
     /**
      * Analyze historical budget performance for the last few months
      */
-    private Map<YearMonth, Double> getHistoricalBudgetPerformance(List<Transaction> transactions, YearMonth currentMonth, int monthsBack) {
+    private Map<YearMonth, Double> getHistoricalBudgetPerformance(LedgerSnapshot ledger, YearMonth currentMonth, int monthsBack) {
         Map<YearMonth, Double> performance = new LinkedHashMap<>();
         double currentBudget = getCurrentMonthlyBudget();
+        TransactionRollup rollup = ledger.getRollup();
 
         for (int i = 1; i <= monthsBack; i++) {
             YearMonth targetMonth = currentMonth.minusMonths(i);
-            double monthlyExpense = transactions.stream()
-                    .filter(t -> t.getType() == Transaction.Type.EXPENSE)
-                    .filter(t -> YearMonth.from(t.getDate()).equals(targetMonth))
-                    .mapToDouble(Transaction::getAmount)
-                    .sum();
+            double monthlyExpense = rollup.getTotal(targetMonth, Transaction.Type.EXPENSE);
 
             double budgetUtilization = currentBudget > 0 ? (monthlyExpense / currentBudget) * 100 : 0;
             performance.put(targetMonth, budgetUtilization);
@@ -1026,43 +1124,23 @@ public class MainFrame extends JFrame {
     /**
      * Generate financial analysis locally with Chinese context
      */
-    private String generateLocalFinancialAnalysis(List<Transaction> transactions, YearMonth selectedMonth) {
+    private String generateLocalFinancialAnalysis(LedgerSnapshot ledger, YearMonth selectedMonth) {
         // If no month selected, use the most recent month
+        TransactionDateIndex dateIndex = ledger.getDateIndex();
         YearMonth targetMonth = selectedMonth;
         if (targetMonth == null) {
-            // Find the most recent month
-            LocalDate mostRecent = LocalDate.MIN;
-            for (Transaction t : transactions) {
-                if (t.getDate().isAfter(mostRecent)) {
-                    mostRecent = t.getDate();
-                }
-            }
-            targetMonth = YearMonth.from(mostRecent);
-        }
-
-        // Filter transactions for the target month
-        List<Transaction> monthlyTransactions = new ArrayList<>();
-        for (Transaction t : transactions) {
-            if (YearMonth.from(t.getDate()).equals(targetMonth)) {
-                monthlyTransactions.add(t);
+            targetMonth = dateIndex.latestMonth();
+            if (targetMonth == null) {
+                targetMonth = YearMonth.from(LocalDate.MIN);
             }
         }
 
-        // Calculate monthly income and expenses
-        double totalIncome = 0;
-        double totalExpense = 0;
-        Map<String, Double> expenseByCategory = new HashMap<>();
-        Map<String, Double> incomeByCategory = new HashMap<>();
-
-        for (Transaction t : monthlyTransactions) {
-            if (t.getType() == Transaction.Type.INCOME) {
-                totalIncome += t.getAmount();
-                incomeByCategory.merge(t.getCategory(), t.getAmount(), Double::sum);
-            } else {
-                totalExpense += t.getAmount();
-                expenseByCategory.merge(t.getCategory(), t.getAmount(), Double::sum);
-            }
-        }
+        // Monthly income and expenses from the pre-aggregated totals
+        TransactionRollup rollup = ledger.getRollup();
+        double totalIncome = rollup.getTotal(targetMonth, Transaction.Type.INCOME);
+        double totalExpense = rollup.getTotal(targetMonth, Transaction.Type.EXPENSE);
+        Map<String, Double> expenseByCategory = rollup.getCategoryTotals(targetMonth, Transaction.Type.EXPENSE);
+        Map<String, Double> incomeByCategory = rollup.getCategoryTotals(targetMonth, Transaction.Type.INCOME);
 
         // Find the top expense category
         String topExpenseCategory = "";
@@ -1282,14 +1360,8 @@ public class MainFrame extends JFrame {
     }
 
     private void showChart() {
-        List<Transaction> transactions = controller.getAllTransactions();
-
-        Set<YearMonth> availableMonths = new TreeSet<>();
-        Set<String> allCategories = new TreeSet<>();
-        for (Transaction t : transactions) {
-            availableMonths.add(YearMonth.from(t.getDate()));
-            allCategories.add(t.getCategory());
-        }
+        Set<YearMonth> availableMonths = controller.getAvailableMonths();
+        Set<String> allCategories = controller.getUsedCategories();
 
         UIManager.put("OptionPane.okButtonText", "OK");
         UIManager.put("OptionPane.cancelButtonText", "Cancel");
@@ -1455,11 +1527,13 @@ public class MainFrame extends JFrame {
             SwingWorker<String, Void> analysisWorker = new SwingWorker<String, Void>() {
                 @Override
                 protected String doInBackground() throws Exception {
+                    // A fixed copy, so edits made during the analysis neither race it nor wait for it
+                    LedgerSnapshot ledger = controller.snapshot();
                     try {
-                        return generateFinancialAnalysisViaAPI(transactions, selectedMonth);
+                        return generateFinancialAnalysisViaAPI(ledger, selectedMonth);
                     } catch (Exception ex) {
                         System.err.println("API analysis failed: " + ex.getMessage() + ". Using local analysis with Chinese context.");
-                        return generateLocalFinancialAnalysis(transactions, selectedMonth);
+                        return generateLocalFinancialAnalysis(ledger, selectedMonth);
                     }
                 }
 
@@ -1573,12 +1647,8 @@ public class MainFrame extends JFrame {
 
             if (selectedMonth == null || selectedType == null) return;
 
-            List<Transaction> allThisMonth = new ArrayList<>();
-            for (Transaction t : transactions) {
-                if (YearMonth.from(t.getDate()).equals(selectedMonth)) {
-                    allThisMonth.add(t);
-                }
-            }
+            // O(rows in month) lookup through the date index, only needed for the detail listing
+            List<Transaction> allThisMonth = controller.getDateIndex().inMonth(selectedMonth);
 
             List<Transaction> filtered = new ArrayList<>();
             for (Transaction t : allThisMonth) {
@@ -1587,8 +1657,11 @@ public class MainFrame extends JFrame {
                 }
             }
 
-            double totalIncome = allThisMonth.stream().filter(t -> t.getType() == Transaction.Type.INCOME).mapToDouble(Transaction::getAmount).sum();
-            double totalExpense = allThisMonth.stream().filter(t -> t.getType() == Transaction.Type.EXPENSE).mapToDouble(Transaction::getAmount).sum();
+            // Totals come pre-aggregated from the rollup
+            TransactionRollup rollup = controller.getRollup();
+            String categoryFilter = "All".equals(selectedCategory) ? null : selectedCategory;
+            double totalIncome = rollup.getTotal(selectedMonth, Transaction.Type.INCOME);
+            double totalExpense = rollup.getTotal(selectedMonth, Transaction.Type.EXPENSE);
 
             incomeLabel.setText(String.format("Total Income: ¥%.2f", totalIncome));
             expenseLabel.setText(String.format("Total Expense: ¥%.2f", totalExpense));
@@ -1641,9 +1714,9 @@ public class MainFrame extends JFrame {
             String seasonalInfo = getSeasonalContext(selectedMonth);
             statusLabel.setText(seasonalInfo.isEmpty() ? "" : "📅 " + seasonalInfo);
 
-            Map<String, Double> categoryTotals = new HashMap<>();
-            for (Transaction t : filtered) {
-                categoryTotals.merge(t.getCategory(), t.getAmount(), Double::sum);
+            Map<String, Double> categoryTotals = rollup.getCategoryTotals(selectedMonth, selectedType);
+            if (categoryFilter != null) {
+                categoryTotals.keySet().retainAll(Collections.singleton(categoryFilter));
             }
 
             DefaultPieDataset<String> pieDataset = new DefaultPieDataset<>();
@@ -1660,17 +1733,12 @@ public class MainFrame extends JFrame {
             pieChart.getPlot().setOutlinePaint(null);
             ChartPanel piePanel = new ChartPanel(pieChart);
 
-            Map<LocalDate, Double> dailyTotal = new HashMap<>();
-            for (Transaction t : filtered) {
-                dailyTotal.merge(t.getDate(), t.getAmount(), Double::sum);
-            }
-
-            List<LocalDate> sortedDates = new ArrayList<>(dailyTotal.keySet());
-            sortedDates.sort(Comparator.naturalOrder());
+            SortedMap<LocalDate, Double> dailyTotal = rollup.getDailyTotals(selectedMonth, selectedType, categoryFilter);
 
             TimeSeries series = new TimeSeries(selectedType + " Daily Trend");
-            for (LocalDate date : sortedDates) {
-                series.add(new Day(date.getDayOfMonth(), date.getMonthValue(), date.getYear()), dailyTotal.get(date));
+            for (Map.Entry<LocalDate, Double> entry : dailyTotal.entrySet()) {
+                LocalDate date = entry.getKey();
+                series.add(new Day(date.getDayOfMonth(), date.getMonthValue(), date.getYear()), entry.getValue());
             }
 
             TimeSeriesCollection dataset = new TimeSeriesCollection(series);
@@ -1814,21 +1882,13 @@ public class MainFrame extends JFrame {
     }
 
     private void updateStatsPanel() {
-        List<Transaction> transactions = controller.getAllTransactions();
-        Set<String> uniqueEditDates = new HashSet<>();
-
         // Count unique recording dates
-        for (Transaction t : transactions) {
-            uniqueEditDates.add(t.getEditTime().toString());
-        }
-
-        daysLabel.setText(String.valueOf(uniqueEditDates.size()));
+        daysLabel.setText(String.valueOf(controller.getRecordedDayCount()));
 
         // Enhanced tip system with Chinese context
-        String today = LocalDate.now().toString();
         LocalDate currentDate = LocalDate.now();
 
-        if (uniqueEditDates.contains(today)) {
+        if (controller.hasRecordedOn(currentDate)) {
             // Check for Chinese context
             int month = currentDate.getMonthValue();
             if (month == 11) {
@@ -0,0 +1,251 @@
+package view;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs long operations such as imports, exports and recategorization off the event
+ * dispatch thread, one at a time in the order they were submitted. The running task
+ * shows its progress in the status bar next to a Cancel button.
+ *
+ * Tasks change the TransactionController only through runOnEdt/callOnEdt, so its
+ * mutators and live views are only used from the event dispatch thread. To read
+ * the ledger, a task may call controller.snapshot() on its own thread, which hands
+ * out an immutable copy under the controller's lock. Since tasks never overlap,
+ * one task cannot see another's half-finished work.
+ */
+public class TaskRunner {
+
+    /**
+     * One background operation. compute() runs on the task thread, every other
+     * callback on the event dispatch thread.
+     */
+    public abstract static class Task<T> {
+        private final String name;
+        private volatile boolean cancelled;
+        private TaskRunner runner;
+
+        protected Task(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * The work itself; throw CancellationException to stop after cancel
+         */
+        protected abstract T compute() throws Exception;
+
+        /**
+         * Make a running compute() stop soon, e.g. by cancelling a pipeline
+         */
+        protected void onCancel() {
+        }
+
+        /**
+         * The task completed without being cancelled
+         */
+        protected void succeeded(T result) {
+        }
+
+        /**
+         * Called last however the task ended
+         */
+        protected void finished() {
+        }
+
+        /**
+         * Report progress from any thread
+         * @param percent 0-100, or negative if the amount of work is unknown
+         */
+        protected void progress(int percent, String message) {
+            runner.report(percent, message);
+        }
+
+        /**
+         * Run an action on the event dispatch thread and wait for it
+         */
+        protected void runOnEdt(Runnable action) throws Exception {
+            callOnEdt(() -> {
+                action.run();
+                return null;
+            });
+        }
+
+        /**
+         * Compute a value on the event dispatch thread and wait for it
+         */
+        protected <R> R callOnEdt(Callable<R> action) throws Exception {
+            if (SwingUtilities.isEventDispatchThread()) {
+                return action.call();
+            }
+            FutureTask<R> future = new FutureTask<>(action);
+            SwingUtilities.invokeAndWait(future);
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw (Error) cause;
+            }
+        }
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "background-task");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Component owner;
+    private final JLabel statusLabel;
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private final JButton cancelButton = new JButton("Cancel");
+    private final JPanel controls = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+    private final JPanel statusPanel = new JPanel(new BorderLayout());
+
+    // Event dispatch thread only
+    private Task<?> current;
+    private int pendingTasks;
+
+    // Latest progress from the task thread, applied in at most one queued EDT update
+    private volatile int reportedPercent;
+    private volatile String reportedMessage;
+    private final AtomicBoolean updateQueued = new AtomicBoolean();
+
+    public TaskRunner(Component owner, JLabel statusLabel) {
+        this.owner = owner;
+        this.statusLabel = statusLabel;
+        progressBar.setStringPainted(true);
+        cancelButton.addActionListener(e -> cancelCurrent());
+
+        controls.add(progressBar);
+        controls.add(cancelButton);
+        controls.setVisible(false);
+        statusPanel.add(statusLabel, BorderLayout.CENTER);
+        statusPanel.add(controls, BorderLayout.EAST);
+    }
+
+    /**
+     * Status label plus the progress bar and Cancel button, shown while a task runs
+     */
+    public JPanel getStatusPanel() {
+        return statusPanel;
+    }
+
+    /**
+     * Queue a task behind the ones already submitted. Call on the event dispatch thread.
+     */
+    public <T> void submit(Task<T> task) {
+        task.runner = this;
+        pendingTasks++;
+        if (current != null) {
+            statusLabel.setText(current.getName() + "... (" + (pendingTasks - 1) + " more queued)");
+        }
+        // invokeLater keeps the start and end callbacks of consecutive tasks in order,
+        // which SwingWorker.done() does not guarantee
+        executor.execute(() -> {
+            SwingUtilities.invokeLater(() -> started(task));
+            T result = null;
+            Throwable failure = null;
+            try {
+                if (task.isCancelled()) {
+                    throw new CancellationException();
+                }
+                result = task.compute();
+            } catch (Throwable e) {
+                failure = e;
+            }
+            T finalResult = result;
+            Throwable finalFailure = failure;
+            SwingUtilities.invokeLater(() -> completed(task, finalResult, finalFailure));
+        });
+    }
+
+    /**
+     * Whether a task is running or queued
+     */
+    public boolean isBusy() {
+        return pendingTasks > 0;
+    }
+
+    /**
+     * Ask the running task to stop; the tasks queued behind it still run
+     */
+    public void cancelCurrent() {
+        Task<?> task = current;
+        if (task != null && !task.cancelled) {
+            task.cancelled = true;
+            statusLabel.setText("Cancelling " + task.getName().toLowerCase() + "...");
+            task.onCancel();
+        }
+    }
+
+    private void started(Task<?> task) {
+        current = task;
+        reportedPercent = -1;
+        reportedMessage = task.getName() + "...";
+        progressBar.setIndeterminate(true);
+        progressBar.setString("");
+        controls.setVisible(true);
+        statusLabel.setText(reportedMessage);
+    }
+
+    private <T> void completed(Task<T> task, T result, Throwable failure) {
+        current = null;
+        pendingTasks--;
+        if (pendingTasks == 0) {
+            controls.setVisible(false);
+        }
+        try {
+            if (task.isCancelled() || failure instanceof CancellationException) {
+                statusLabel.setText(task.getName() + " cancelled");
+            } else if (failure != null) {
+                statusLabel.setText(task.getName() + " failed");
+                JOptionPane.showMessageDialog(owner, task.getName() + " failed: " + failure.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            } else {
+                task.succeeded(result);
+            }
+        } finally {
+            task.finished();
+        }
+    }
+
+    private void report(int percent, String message) {
+        reportedPercent = percent;
+        reportedMessage = message;
+        if (updateQueued.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                updateQueued.set(false);
+                if (current == null || current.isCancelled()) {
+                    return;
+                }
+                int p = reportedPercent;
+                progressBar.setIndeterminate(p < 0);
+                if (p >= 0) {
+                    progressBar.setValue(Math.min(100, p));
+                    progressBar.setString(Math.min(100, p) + "%");
+                }
+                String text = reportedMessage;
+                if (pendingTasks > 1) {
+                    text += " (" + (pendingTasks - 1) + " more queued)";
+                }
+                statusLabel.setText(text);
+            });
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package view;
+
+import controller.TransactionController;
+import controller.TransactionStore;
+import model.Transaction;
+
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Table model that reads cells straight from the controller's transaction store.
+ * Nothing is copied: getValueAt looks up one field of one row when the table
+ * paints it. Sorting and filtering keep an int permutation of store rows (view row
+ * to store row); with neither active, view rows are store rows. Row changes from
+ * the controller arrive through RowListener and are passed on as insert, update
+ * and delete events, so the table repaints only what changed.
+ * Use it on the event dispatch thread only.
+ */
+public class TransactionTableModel extends AbstractTableModel implements TransactionController.RowListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"Type", "Category", "Amount", "Date", "Note", "Source"};
+
+    // Changes to more rows than this rebuild the permutation instead of patching it
+    private static final int PATCH_LIMIT = 64;
+
+    private final TransactionController controller;
+
+    private int sortColumn = -1;
+    private boolean ascending = true;
+    private String filter = "";
+    private boolean filterMayMatchDate;
+
+    // View row -> store row, valid up to viewSize; null when neither sorted nor filtered
+    private int[] view;
+    private int viewSize;
+
+    public TransactionTableModel(TransactionController controller) {
+        this.controller = controller;
+    }
+
+    @Override
+    public int getRowCount() {
+        return view == null ? store().size() : viewSize;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false; // Edited through dialogs
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        TransactionStore store = store();
+        int r = toModelRow(row);
+        switch (column) {
+            case 0: return store.getType(r);
+            case 1: return store.getCategory(r);
+            case 2: return store.getAmount(r);
+            case 3: return date(store.getEpochDay(r));
+            case 4: return store.getNote(r);
+            case 5: return store.getSource(r);
+            default: return null;
+        }
+    }
+
+    /**
+     * The controller row (index into getAllTransactions) shown at a table row
+     */
+    public int toModelRow(int viewRow) {
+        return view == null ? viewRow : view[viewRow];
+    }
+
+    /**
+     * The transaction shown at a table row
+     */
+    public Transaction getTransaction(int viewRow) {
+        return store().get(toModelRow(viewRow));
+    }
+
+    /**
+     * Id of the transaction shown at a table row; unlike the row, it stays valid
+     * while other rows are added or removed
+     */
+    public long getId(int viewRow) {
+        return store().getId(toModelRow(viewRow));
+    }
+
+    /**
+     * Sort by a column: ascending, then descending, then back to the ledger order
+     */
+    public void sortBy(int column) {
+        if (column != sortColumn) {
+            sortColumn = column;
+            ascending = true;
+        } else if (ascending) {
+            ascending = false;
+        } else {
+            sortColumn = -1;
+        }
+        rebuild();
+        fireTableDataChanged();
+    }
+
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Show only rows whose type, category, date, note or source contain the text, ignoring case
+     */
+    public void setFilter(String text) {
+        String normalized = text == null ? "" : text.trim();
+        if (normalized.equals(filter)) {
+            return;
+        }
+        filter = normalized;
+        filterMayMatchDate = normalized.matches("[0-9-]+");
+        rebuild();
+        fireTableDataChanged();
+    }
+
+    // ---- Controller row changes ----
+
+    @Override
+    public void rowsInserted(int firstRow, int lastRow) {
+        if (view == null) {
+            fireTableRowsInserted(firstRow, lastRow);
+            return;
+        }
+        int count = lastRow - firstRow + 1;
+        if (count > PATCH_LIMIT) {
+            rowsReset();
+            return;
+        }
+        for (int i = 0; i < viewSize; i++) {
+            if (view[i] >= firstRow) view[i] += count;
+        }
+        for (int r = firstRow; r <= lastRow; r++) {
+            insertIfVisible(r);
+        }
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int lastRow) {
+        if (view == null) {
+            fireTableRowsUpdated(firstRow, lastRow);
+            return;
+        }
+        if (lastRow - firstRow + 1 > PATCH_LIMIT) {
+            rowsReset();
+            return;
+        }
+        for (int r = firstRow; r <= lastRow; r++) {
+            int pos = indexOf(r);
+            if (pos >= 0 && matches(r) && inOrder(pos)) {
+                fireTableRowsUpdated(pos, pos);
+                continue;
+            }
+            if (pos >= 0) {
+                removeAt(pos);
+            }
+            insertIfVisible(r);
+        }
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int lastRow) {
+        if (view == null) {
+            fireTableRowsDeleted(firstRow, lastRow);
+            return;
+        }
+        int count = lastRow - firstRow + 1;
+        if (count > PATCH_LIMIT) {
+            rowsReset();
+            return;
+        }
+        // Renumber first, so the table never reads a row past the end of the store
+        for (int i = 0; i < viewSize; i++) {
+            if (view[i] > lastRow) {
+                view[i] -= count;
+            } else if (view[i] >= firstRow) {
+                view[i] = -1;
+            }
+        }
+        // Remove from the end so earlier positions stay valid for each event
+        for (int pos = viewSize - 1; pos >= 0; pos--) {
+            if (view[pos] < 0) {
+                removeAt(pos);
+            }
+        }
+    }
+
+    @Override
+    public void rowsReset() {
+        rebuild();
+        fireTableDataChanged();
+    }
+
+    // ---- Permutation ----
+
+    private TransactionStore store() {
+        return controller.getStore();
+    }
+
+    private void rebuild() {
+        if (sortColumn < 0 && filter.isEmpty()) {
+            view = null;
+            viewSize = 0;
+            return;
+        }
+        int size = store().size();
+        int[] rows = new int[size];
+        int n = 0;
+        for (int r = 0; r < size; r++) {
+            if (matches(r)) rows[n++] = r;
+        }
+        if (sortColumn >= 0) {
+            sort(rows, new int[n], 0, n);
+        }
+        view = rows;
+        viewSize = n;
+    }
+
+    private void insertIfVisible(int r) {
+        if (!matches(r)) {
+            return;
+        }
+        int pos = insertionPoint(r);
+        if (viewSize == view.length) {
+            view = Arrays.copyOf(view, Math.max(16, viewSize * 2));
+        }
+        System.arraycopy(view, pos, view, pos + 1, viewSize - pos);
+        view[pos] = r;
+        viewSize++;
+        fireTableRowsInserted(pos, pos);
+    }
+
+    private void removeAt(int pos) {
+        System.arraycopy(view, pos + 1, view, pos, viewSize - pos - 1);
+        viewSize--;
+        fireTableRowsDeleted(pos, pos);
+    }
+
+    private int indexOf(int r) {
+        for (int i = 0; i < viewSize; i++) {
+            if (view[i] == r) return i;
+        }
+        return -1;
+    }
+
+    private boolean inOrder(int pos) {
+        if (sortColumn < 0) {
+            return true;
+        }
+        return (pos == 0 || compare(view[pos - 1], view[pos]) < 0)
+                && (pos == viewSize - 1 || compare(view[pos], view[pos + 1]) < 0);
+    }
+
+    /**
+     * Binary search in the sorted view; the end of the view when unsorted
+     */
+    private int insertionPoint(int r) {
+        if (sortColumn < 0) {
+            // Unsorted views keep store order
+            int low = 0, high = viewSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (view[mid] < r) low = mid + 1; else high = mid;
+            }
+            return low;
+        }
+        int low = 0, high = viewSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(view[mid], r) < 0) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    // Stable merge sort of rows[from, to) by the sort column
+    private void sort(int[] rows, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sort(rows, buffer, from, mid);
+        sort(rows, buffer, mid, to);
+        if (compare(rows[mid - 1], rows[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            rows[k++] = compare(buffer[j], buffer[i]) < 0 ? buffer[j++] : buffer[i++];
+        }
+        while (i < mid) rows[k++] = buffer[i++];
+        while (j < to) rows[k++] = buffer[j++];
+    }
+
+    /**
+     * Order of two store rows by the sort column; ties keep the ledger order
+     */
+    private int compare(int a, int b) {
+        TransactionStore store = store();
+        int result;
+        switch (sortColumn) {
+            case 0: result = compareNullable(store.getType(a), store.getType(b)); break;
+            case 1: result = compareNullable(store.getCategory(a), store.getCategory(b)); break;
+            case 2: result = Double.compare(store.getAmount(a), store.getAmount(b)); break;
+            case 3: result = Integer.compare(store.getEpochDay(a), store.getEpochDay(b)); break;
+            case 4: result = compareNullable(store.getNote(a), store.getNote(b)); break;
+            case 5: result = compareNullable(store.getSource(a), store.getSource(b)); break;
+            default: result = 0;
+        }
+        if (!ascending) {
+            result = -result;
+        }
+        return result != 0 ? result : Integer.compare(a, b);
+    }
+
+    private static <T extends Comparable<T>> int compareNullable(T a, T b) {
+        if (a == null) return b == null ? 0 : -1;
+        if (b == null) return 1;
+        return a.compareTo(b);
+    }
+
+    private boolean matches(int r) {
+        if (filter.isEmpty()) {
+            return true;
+        }
+        TransactionStore store = store();
+        Transaction.Type type = store.getType(r);
+        if (contains(type == null ? null : type.name(), filter)
+                || contains(store.getCategory(r), filter)
+                || contains(store.getNote(r), filter)
+                || contains(store.getSource(r), filter)) {
+            return true;
+        }
+        // Formatting the date is the expensive part, so only for filters that can match one
+        LocalDate date = filterMayMatchDate ? date(store.getEpochDay(r)) : null;
+        return date != null && contains(date.toString(), filter);
+    }
+
+    private static boolean contains(String text, String part) {
+        if (text == null) {
+            return false;
+        }
+        for (int i = 0; i + part.length() <= text.length(); i++) {
+            if (text.regionMatches(true, i, part, 0, part.length())) return true;
+        }
+        return false;
+    }
+
+    private static LocalDate date(int epochDay) {
+        return epochDay == TransactionStore.NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}